@@ -0,0 +1,95 @@
+package com.shaadi.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import com.shaadi.service.SocketTokenService;
+
+import java.util.Map;
+
+// Identifies the user before the WebSocket upgrade.
+// Clients pass "token=<Firebase ID token or session token>" in the query string, since
+// browsers can't set headers on a WebSocket/SockJS connect. The old "userId=<id>" parameter
+// is only honoured while shaadi.websocket.auth.allow-legacy-user-id is on.
+@Component
+public class SocketAuthInterceptor implements HandshakeInterceptor {
+    public static final String USER_ID_ATTRIBUTE = "shaadi.userId";
+
+    private final SocketTokenService tokenService;
+    private final boolean allowLegacyUserId;
+    // Handshakes let in on the unauthenticated userId= parameter; should reach zero before the flag is dropped
+    private final Counter legacyHandshakes;
+
+    public SocketAuthInterceptor(SocketTokenService tokenService, MeterRegistry meterRegistry,
+                                 @Value("${shaadi.websocket.auth.allow-legacy-user-id:false}") boolean allowLegacyUserId) {
+        this.tokenService = tokenService;
+        this.allowLegacyUserId = allowLegacyUserId;
+        this.legacyHandshakes = meterRegistry.counter("shaadi.websocket.auth.legacy");
+        if (allowLegacyUserId) {
+            System.err.println("⚠️ WebSocket handshakes with an unauthenticated userId= parameter are allowed");
+        }
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String query = request.getURI().getRawQuery();
+
+        Long userId = tokenService.resolveUserId(queryParam(query, "token"));
+        if (userId == null && allowLegacyUserId) {
+            userId = parseId(queryParam(query, "userId"));
+            if (userId != null) {
+                legacyHandshakes.increment();
+                System.err.println("⚠️ Legacy WebSocket handshake without a token for user " + userId);
+            }
+        }
+        if (userId == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(USER_ID_ATTRIBUTE, userId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    // Value of one query parameter, found with indexOf instead of splitting the whole query
+    static String queryParam(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        int from = 0;
+        while (true) {
+            int at = query.indexOf(name, from);
+            if (at < 0) {
+                return null;
+            }
+            int valueStart = at + name.length();
+            boolean atParamStart = at == 0 || query.charAt(at - 1) == '&';
+            if (atParamStart && valueStart < query.length() && query.charAt(valueStart) == '=') {
+                int end = query.indexOf('&', valueStart + 1);
+                return query.substring(valueStart + 1, end < 0 ? query.length() : end);
+            }
+            from = valueStart;
+        }
+    }
+
+    private static Long parseId(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -11,27 +11,9 @@ public class UserHandshakeHandler extends DefaultHandshakeHandler {
 
     @Override
     protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler, Map<String, Object> attributes) {
-        // Extract userId from query parameters
-        String query = request.getURI().getQuery();
-        if (query != null && query.contains("userId=")) {
-            String userId = extractUserId(query);
-            if (userId != null) {
-                return new StompPrincipal(userId);
-            }
-        }
-        
-        // Fallback: generate a random principal if no userId provided
-        return new StompPrincipal("anonymous-" + System.currentTimeMillis());
-    }
-
-    private String extractUserId(String query) {
-        String[] params = query.split("&");
-        for (String param : params) {
-            if (param.startsWith("userId=")) {
-                return param.substring(7); // "userId=".length() == 7
-            }
-        }
-        return null;
+        // Set by SocketAuthInterceptor, which rejects the handshake when it can't identify the user
+        Object userId = attributes.get(SocketAuthInterceptor.USER_ID_ATTRIBUTE);
+        return userId != null ? new StompPrincipal(String.valueOf(userId)) : null;
     }
 
     // Simple Principal implementation
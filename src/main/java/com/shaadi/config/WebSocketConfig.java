@@ -1,23 +1,112 @@
 package com.shaadi.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import com.shaadi.service.PresenceRegistry;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final PresenceRegistry presenceRegistry;
+    private final SocketAuthInterceptor socketAuthInterceptor;
+
+    public WebSocketConfig(PresenceRegistry presenceRegistry, SocketAuthInterceptor socketAuthInterceptor) {
+        this.presenceRegistry = presenceRegistry;
+        this.socketAuthInterceptor = socketAuthInterceptor;
+    }
+
+    // "simple" keeps subscriptions in this JVM; "relay" forwards them to an external STOMP broker
+    // (RabbitMQ/ActiveMQ) so user destinations reach sessions connected to any instance
+    @Value("${shaadi.websocket.broker:simple}")
+    private String brokerMode;
+
+    @Value("${shaadi.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${shaadi.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${shaadi.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${shaadi.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${shaadi.websocket.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    // Channel pools: inbound handles frames from clients, outbound writes frames to them
+    @Value("${shaadi.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${shaadi.websocket.inbound.max-pool-size:32}")
+    private int inboundMaxPoolSize;
+
+    @Value("${shaadi.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${shaadi.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${shaadi.websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${shaadi.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    // Per-session limits: a client that can't keep up is disconnected instead of backing up the outbound channel
+    @Value("${shaadi.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${shaadi.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${shaadi.websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${shaadi.websocket.time-to-first-message-ms:60000}")
+    private int timeToFirstMessageMillis;
+
+    // Threads of the simple broker's heartbeat scheduler. The broker sends heartbeats from one
+    // periodic sweep over all sessions; sessions are not sharded across schedulers
+    @Value("${shaadi.websocket.heartbeat.pool-size:4}")
+    private int heartbeatPoolSize;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue")
-              .setHeartbeatValue(new long[] {10000, 10000}) // 10 second heartbeat to keep connections alive
-              .setTaskScheduler(heartBeatScheduler()); // Required for heartbeat
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(10000)
+                    .setSystemHeartbeatReceiveInterval(10000)
+                    // Share connected users between instances and pass on messages for users connected elsewhere
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            System.out.println("🔌 WebSocket broker relay: " + relayHost + ":" + relayPort);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue")
+                  .setHeartbeatValue(new long[] {10000, 10000}) // 10 second heartbeat to keep connections alive
+                  .setTaskScheduler(heartBeatScheduler()); // Required for heartbeat
+        }
         config.setApplicationDestinationPrefixes("/app");
     }
 
@@ -25,14 +114,41 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
+                .addInterceptors(socketAuthInterceptor)
                 .setHandshakeHandler(new UserHandshakeHandler())
                 .withSockJS();
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+        // Inbound frames (heartbeats included) keep the sender marked as present
+        registration.interceptors(presenceRegistry);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMillis)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .setTimeToFirstMessage(timeToFirstMessageMillis);
+    }
+
     @Bean
     public TaskScheduler heartBeatScheduler() {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-        scheduler.setPoolSize(1);
+        scheduler.setPoolSize(heartbeatPoolSize);
         scheduler.setThreadNamePrefix("ws-heartbeat-");
         scheduler.initialize();
         return scheduler;
@@ -3,6 +3,9 @@ package com.shaadi.controller;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.shaadi.dto.ChatFrame;
+import com.shaadi.dto.ConversationSummaryDto;
+import com.shaadi.dto.MessageDto;
 import com.shaadi.entity.ChatRequest;
 import com.shaadi.entity.Message;
 import com.shaadi.entity.User;
@@ -26,7 +29,7 @@ public class ChatController {
     @PostMapping
     public ResponseEntity<?> sendMessage(@RequestBody Message message) {
         try {
-            Message savedMessage = chatService.sendMessage(message);
+            ChatFrame savedMessage = chatService.sendMessage(message);
             return ResponseEntity.ok(savedMessage);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -49,6 +52,33 @@ public class ChatController {
         }
     }
 
+    @GetMapping("/{userId}/conversations")
+    public ResponseEntity<?> getConversations(@PathVariable Long userId) {
+        try {
+            List<ConversationSummaryDto> conversations = chatService.getConversationsForUser(userId);
+            return ResponseEntity.ok(conversations);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "An error occurred while retrieving conversations"));
+        }
+    }
+
+    @GetMapping("/{userId}/with/{partnerId}")
+    public ResponseEntity<?> getConversation(
+            @PathVariable Long userId,
+            @PathVariable Long partnerId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            List<MessageDto> messages = chatService.getConversation(userId, partnerId, before, after, limit);
+            return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "An error occurred while retrieving messages"));
+        }
+    }
+
     @GetMapping("/message/{id}")
     public ResponseEntity<?> getMessageById(@PathVariable Long id) {
         try {
@@ -20,9 +20,12 @@ public class NotificationController {
     }
 
     @GetMapping("/{userId}")
-    public ResponseEntity<?> getNotifications(@PathVariable Long userId) {
+    public ResponseEntity<?> getNotifications(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<Notification> notifications = notificationService.getNotificationsForUser(userId);
+            List<Notification> notifications = notificationService.getNotificationsForUser(userId, before, limit);
             return ResponseEntity.ok(notifications);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
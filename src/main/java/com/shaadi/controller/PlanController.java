@@ -1,8 +1,12 @@
 package com.shaadi.controller;
 
 import com.shaadi.entity.Plan;
+import com.shaadi.service.PlanCatalog;
 import com.shaadi.service.PlanService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,11 +24,19 @@ public class PlanController {
         this.planService = planService;
     }
 
+    // Precomputed JSON with an ETag; clients that send it back in If-None-Match get a 304
     @GetMapping
-    public ResponseEntity<?> getAllPublishedPlans() {
+    public ResponseEntity<?> getAllPublishedPlans(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            List<Plan> plans = planService.getAllPublishedPlans();
-            return ResponseEntity.ok(plans);
+            PlanCatalog.Snapshot catalog = planService.getPublishedCatalog();
+            if (catalog.matches(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(catalog.getEtag()).cacheControl(CacheControl.noCache()).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(catalog.getEtag())
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(catalog.getJson());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Failed to retrieve plans"));
         }
@@ -10,10 +10,13 @@ import com.shaadi.dto.UserRegistrationDto;
 import com.shaadi.dto.LoginDto;
 import com.shaadi.dto.PurchaseSubscriptionDto;
 import com.shaadi.dto.SubscriptionResponseDto;
+import com.shaadi.dto.CursorPageDto;
+import com.shaadi.dto.ProfileSearchCriteria;
 import com.shaadi.entity.Favourite;
 import com.shaadi.entity.Subscription;
 import com.shaadi.entity.Block;
 import com.shaadi.service.CloudflareR2Service;
+import com.shaadi.service.SocketTokenService;
 
 import java.util.*;
 
@@ -21,12 +24,16 @@ import java.util.*;
 @RequestMapping("/api/users")
 @CrossOrigin
 public class UserController {
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
     private final UserService userService;
     private final CloudflareR2Service cloudflareR2Service;
+    private final SocketTokenService socketTokenService;
 
-    public UserController(UserService userService, CloudflareR2Service cloudflareR2Service) {
+    public UserController(UserService userService, CloudflareR2Service cloudflareR2Service, SocketTokenService socketTokenService) {
         this.userService = userService;
         this.cloudflareR2Service = cloudflareR2Service;
+        this.socketTokenService = socketTokenService;
     }
 
     @GetMapping("/{userId}/subscription")
@@ -40,10 +47,20 @@ public class UserController {
     }
 
     @GetMapping("/{userId}/subscription-history")
-    public ResponseEntity<List<SubscriptionResponseDto>> getSubscriptionHistory(@PathVariable Long userId) {
+    public ResponseEntity<List<SubscriptionResponseDto>> getSubscriptionHistory(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<SubscriptionResponseDto> history = userService.getSubscriptionHistoryByUserId(userId);
-            return ResponseEntity.ok(history);
+            // Pass the X-Next-Cursor value of the previous response as before; absent on the last page
+            CursorPageDto<SubscriptionResponseDto> history = userService.getSubscriptionHistoryByUserId(userId, before, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (history.getNextCursor() != null) {
+                response.header("X-Next-Cursor", history.getNextCursor());
+            }
+            return response.body(history.getItems());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(List.of());
         } catch (Exception e) {
             return ResponseEntity.status(500).body(List.of());
         }
@@ -97,13 +114,43 @@ public class UserController {
         }
     }
 
+    // Session token for the WebSocket handshake; cheaper to verify than the Firebase ID token on every reconnect
+    @PostMapping("/ws-token")
+    public ResponseEntity<?> webSocketToken(@RequestBody Map<String, String> request) {
+        String idToken = request.get("idToken");
+        if (idToken == null || idToken.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "ID token is required"));
+        }
+        try {
+            String token = socketTokenService.issueSessionToken(idToken);
+            return ResponseEntity.ok(Map.of("token", token, "expiresInMs", socketTokenService.getSessionTtlMillis()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping
     public ResponseEntity<?> all(
             @RequestParam(required = false) String gender,
             @RequestParam(required = false) Long currentUserId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor) {
         try {
+            // Cursor mode for the app feed: pass cursor= (empty) for the first page, then
+            // the X-Next-Cursor value of the previous response. Offset mode stays for the admin panel.
+            if (cursor != null) {
+                CursorPageDto<User> userSlice = userService.findAfter(gender, currentUserId, cursor,
+                    Math.max(1, Math.min(size, MAX_FEED_PAGE_SIZE)));
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (userSlice.getNextCursor() != null) {
+                    response.header("X-Next-Cursor", userSlice.getNextCursor());
+                }
+                return response.body(userSlice.getItems());
+            }
+
             org.springframework.data.domain.Page<User> userPage = userService.findAll(gender, currentUserId,
                 org.springframework.data.domain.PageRequest.of(page, size));
             return ResponseEntity.ok()
@@ -112,6 +159,8 @@ public class UserController {
                 .header("X-Current-Page", String.valueOf(userPage.getNumber()))
                 .header("X-Page-Size", String.valueOf(userPage.getSize()))
                 .body(userPage.getContent());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(List.of());
         }
@@ -180,15 +229,18 @@ public class UserController {
 
     @GetMapping("/search")
     public ResponseEntity<List<User>> search(
-            @RequestParam(required = false) Integer minAge,
-            @RequestParam(required = false) Integer maxAge,
-            @RequestParam(required = false) String name,
-            @RequestParam(required = false) String location,
-            @RequestParam(required = false) String religion,
-            @RequestParam(required = false) String gender,
-            @RequestParam Long currentUserId) {
+            ProfileSearchCriteria criteria,
+            @RequestParam Long currentUserId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
         try {
-            return ResponseEntity.ok(userService.search(minAge, maxAge, name, location, religion, gender, currentUserId));
+            org.springframework.data.domain.Page<User> userPage = userService.search(criteria, currentUserId, page, size);
+            return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(userPage.getTotalElements()))
+                .header("X-Total-Pages", String.valueOf(userPage.getTotalPages()))
+                .header("X-Current-Page", String.valueOf(userPage.getNumber()))
+                .header("X-Page-Size", String.valueOf(userPage.getSize()))
+                .body(userPage.getContent());
         } catch (Exception e) {
             return ResponseEntity.status(500).body(List.of());
         }
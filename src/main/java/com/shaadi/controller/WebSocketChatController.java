@@ -8,14 +8,19 @@ import org.springframework.stereotype.Controller;
 import com.shaadi.entity.ChatRequest;
 import com.shaadi.entity.Message;
 import com.shaadi.entity.Notification;
+import com.shaadi.service.ReadReceiptBuffer;
+
+import java.security.Principal;
 
 @Controller
 public class WebSocketChatController {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final ReadReceiptBuffer readReceiptBuffer;
 
-    public WebSocketChatController(SimpMessagingTemplate messagingTemplate) {
+    public WebSocketChatController(SimpMessagingTemplate messagingTemplate, ReadReceiptBuffer readReceiptBuffer) {
         this.messagingTemplate = messagingTemplate;
+        this.readReceiptBuffer = readReceiptBuffer;
     }
 
     @MessageMapping("/chat.sendMessage")
@@ -63,18 +68,36 @@ public class WebSocketChatController {
     }
 
     @MessageMapping("/chat.markAsRead")
-    public void markAsRead(@Payload MarkAsReadRequest request) {
-        // Broadcast read status update to both users
-        messagingTemplate.convertAndSendToUser(
-            String.valueOf(request.getSenderId()),
-            "/queue/read",
-            request
-        );
-        messagingTemplate.convertAndSendToUser(
-            String.valueOf(request.getReceiverId()),
-            "/queue/read",
-            request
-        );
+    public void markAsRead(@Payload MarkAsReadRequest request, Principal principal) {
+        // The reader is whoever owns this session; only the sender comes from the payload
+        Long readerId = sessionUserId(principal);
+        if (readerId == null || request.getSenderId() <= 0) {
+            System.err.println("⚠️ Ignoring read receipt from unauthenticated session or without sender");
+            return;
+        }
+        if (request.getReceiverId() != 0 && request.getReceiverId() != readerId) {
+            System.err.println("⚠️ Rejected read receipt: session user " + readerId + " claimed to be " + request.getReceiverId());
+            return;
+        }
+
+        // The reader read the sender's messages; persisted with the next batch
+        readReceiptBuffer.record(readerId, (long) request.getSenderId());
+
+        // Broadcast a receipt built here, not the client's frame, to both users
+        MarkAsReadRequest receipt = new MarkAsReadRequest(request.getSenderId(), readerId.intValue());
+        messagingTemplate.convertAndSendToUser(String.valueOf(request.getSenderId()), "/queue/read", receipt);
+        messagingTemplate.convertAndSendToUser(String.valueOf(readerId), "/queue/read", receipt);
+    }
+
+    private static Long sessionUserId(Principal principal) {
+        if (principal == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(principal.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     public static class MarkAsReadRequest {
@@ -0,0 +1,21 @@
+package com.shaadi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Chat message as pushed to /queue/messages. Keeps the message's JSON field names
+// (sender.id, receiver.id, content, sentAt, read) but carries only a small user card.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatFrame {
+    private Long id;
+    private UserCardDto sender;
+    private UserCardDto receiver;
+    private String content;
+    private LocalDateTime sentAt;
+    private Boolean read;
+}
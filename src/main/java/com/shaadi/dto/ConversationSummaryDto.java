@@ -0,0 +1,22 @@
+package com.shaadi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One row of a user's conversation list
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummaryDto {
+    private Long partnerId;
+    private String partnerName;
+    private String partnerPhotoUrl;
+    private Long lastMessageId;
+    private String lastMessageContent;
+    private Long lastMessageSenderId;
+    private LocalDateTime lastMessageAt;
+    private Integer unreadCount;
+}
@@ -0,0 +1,22 @@
+package com.shaadi.dto;
+
+import com.shaadi.entity.NotificationType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Notification as pushed to /queue/notifications; relatedUser is null for digests
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationFrame {
+    private Long id;
+    private NotificationType type;
+    private String message;
+    private Long recipientId;
+    private UserCardDto relatedUser;
+    private Boolean isRead;
+    private LocalDateTime createdAt;
+}
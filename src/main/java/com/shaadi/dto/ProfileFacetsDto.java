@@ -0,0 +1,24 @@
+package com.shaadi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Searchable attributes of a user, loaded without the rest of the User graph
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileFacetsDto {
+    private Long id;
+    private String gender;
+    private String religion;
+    private String caste;
+    private String motherTongue;
+    private String maritalStatus;
+    private String diet;
+    private Boolean manglik;
+    private String state;
+    private Integer age;
+    private Integer height;
+    private Long annualIncome;
+}
@@ -0,0 +1,33 @@
+package com.shaadi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileSearchCriteria {
+    private Integer minAge;
+    private Integer maxAge;
+    private String name;     // Prefix match
+    private String gender;
+    private String religion;
+
+    // Location (exact match on normalized values)
+    private String cityTown;
+    private String district;
+    private String state;
+    private String location;  // Matches any of cityTown, district or state
+
+    // Matchmaking facets
+    private String caste;
+    private String motherTongue;
+    private String maritalStatus;
+    private String diet;
+    private Boolean manglik;
+    private Integer minHeight;
+    private Integer maxHeight;
+    private Long minIncome;
+    private Long maxIncome;
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import com.shaadi.entity.SubscriptionStatus;
+
 import java.time.LocalDateTime;
 
 @Data
@@ -20,4 +22,10 @@ public class SubscriptionResponseDto {
     private LocalDateTime expiryDate;
     private String status;
     private Integer chatLimit;
+
+    // Used by the JPQL constructor expressions in SubscriptionRepository
+    public SubscriptionResponseDto(Long subscriptionId, Long userId, Long planId, String planName, Integer planDurationMonths, Integer planChatLimit,
+                                   LocalDateTime startDate, LocalDateTime expiryDate, SubscriptionStatus status, Integer chatLimit) {
+        this(subscriptionId, userId, planId, planName, planDurationMonths, planChatLimit, startDate, expiryDate, status.name(), chatLimit);
+    }
 }
@@ -0,0 +1,15 @@
+package com.shaadi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Minimal user shown alongside a chat or notification frame
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserCardDto {
+    private Long id;
+    private String name;
+    private String photoUrl;
+}
@@ -4,6 +4,10 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_block_blocker_blocked", columnList = "blocker_id, blocked_id"),
+    @Index(name = "idx_block_blocked_blocker", columnList = "blocked_id, blocker_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
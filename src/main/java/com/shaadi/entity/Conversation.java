@@ -0,0 +1,35 @@
+package com.shaadi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// One row per pair of users who have exchanged messages, maintained by ChatService.sendMessage.
+// Lets slot checks and the conversation list read by primary key instead of scanning Message.
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_conversation_high_user", columnList = "high_user_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Conversation {
+    @EmbeddedId
+    private ConversationId id;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "low_unread_count", nullable = false)
+    private Integer lowUnreadCount = 0; // Unread messages for the low-id user
+
+    @Column(name = "high_unread_count", nullable = false)
+    private Integer highUnreadCount = 0; // Unread messages for the high-id user
+
+    @Column(name = "chat_slot_consumed", nullable = false)
+    private Boolean chatSlotConsumed = false; // Whether opening it used up one of the sender's chat slots
+}
@@ -0,0 +1,26 @@
+package com.shaadi.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serializable;
+
+// Ordered user pair identifying a conversation: (least user id, greatest user id)
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationId implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "low_user_id", nullable = false)
+    private Long lowUserId;
+
+    @Column(name = "high_user_id", nullable = false)
+    private Long highUserId;
+
+    public static ConversationId of(Long userId, Long otherUserId) {
+        return new ConversationId(Math.min(userId, otherUserId), Math.max(userId, otherUserId));
+    }
+}
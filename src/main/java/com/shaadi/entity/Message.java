@@ -1,5 +1,6 @@
 package com.shaadi.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -7,6 +8,9 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_message_pair_id", columnList = "low_user_id, high_user_id, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,4 +35,22 @@ public class Message {
 
     @Column(name = "is_read", nullable = false)
     private Boolean read = false;
+
+    // Participants as an ordered pair (least, greatest user id), so a single index
+    // serves both directions of a conversation
+    @JsonIgnore
+    @Column(name = "low_user_id")
+    private Long lowUserId;
+
+    @JsonIgnore
+    @Column(name = "high_user_id")
+    private Long highUserId;
+
+    @PrePersist
+    void assignUserPair() {
+        Long senderId = sender.getId();
+        Long receiverId = receiver.getId();
+        lowUserId = Math.min(senderId, receiverId);
+        highUserId = Math.max(senderId, receiverId);
+    }
 }
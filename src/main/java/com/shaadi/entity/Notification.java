@@ -5,7 +5,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+    @Index(name = "idx_notifications_recipient_created", columnList = "recipient_id, created_at"),
+    @Index(name = "idx_notifications_recipient_type_related", columnList = "recipient_id, type, related_user_id"),
+    // Serves the retention job's "is_read = true AND created_at < cutoff" chunks
+    @Index(name = "idx_notifications_read_created", columnList = "is_read, created_at")
+})
 public class Notification {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,20 @@
+package com.shaadi.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// Unread notification count per user, kept in step by NotificationService so the badge
+// is a primary key read instead of a count over the notifications table.
+@Entity
+@Table(name = "notification_counter")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationCounter {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount = 0;
+}
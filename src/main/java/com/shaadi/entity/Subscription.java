@@ -3,10 +3,20 @@ package com.shaadi.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
+// Dynamic update: saving a loaded subscription writes only the columns that changed,
+// so it can't overwrite a usedChatSlots value taken concurrently by consumeChatSlot
 @Entity
+@DynamicUpdate
+@Table(indexes = {
+    // Expiry job: ACTIVE subscriptions past their expiry date
+    @Index(name = "idx_subscription_status_expiry", columnList = "status, expiry_date"),
+    // Subscription history pages
+    @Index(name = "idx_subscription_user_start", columnList = "user_id, start_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
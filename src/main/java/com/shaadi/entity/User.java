@@ -8,9 +8,13 @@ import lombok.*;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    @Index(name = "idx_users_gender_religion_age", columnList = "gender, religion_key, age"),
+    @Index(name = "idx_users_location", columnList = "state_key, district_key, city_town_key")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -79,6 +83,25 @@ public class User {
     @Column(nullable = false)
     private Role role = Role.USER;
 
+    // Normalized (trimmed, lowercase) copies of searchable attributes, kept in sync on save
+    // so search can use plain equality on indexed columns
+    @JsonIgnore
+    private String religionKey;
+    @JsonIgnore
+    private String cityTownKey;
+    @JsonIgnore
+    private String districtKey;
+    @JsonIgnore
+    private String stateKey;
+    @JsonIgnore
+    private String casteKey;
+    @JsonIgnore
+    private String motherTongueKey;
+    @JsonIgnore
+    private String maritalStatusKey;
+    @JsonIgnore
+    private String dietKey;
+
     // Photo gallery
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
     private List<Photo> photos;
@@ -88,4 +111,24 @@ public class User {
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonIgnore
     private List<Subscription> subscriptions;
+
+    @PrePersist
+    @PreUpdate
+    void updateSearchKeys() {
+        religionKey = searchKey(religion);
+        cityTownKey = searchKey(cityTown);
+        districtKey = searchKey(district);
+        stateKey = searchKey(state);
+        casteKey = searchKey(caste);
+        motherTongueKey = searchKey(motherTongue);
+        maritalStatusKey = searchKey(maritalStatus);
+        dietKey = searchKey(diet);
+    }
+
+    public static String searchKey(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -23,6 +23,12 @@ public interface BlockRepository extends JpaRepository<Block, Long> {
     @Query("SELECT COUNT(b) > 0 FROM Block b WHERE b.blocker = :blocker AND b.blocked = :blocked")
     boolean existsByBlockerAndBlocked(@Param("blocker") User blocker, @Param("blocked") User blocked);
 
+    @Query("SELECT b.blocked.id FROM Block b WHERE b.blocker.id = :userId")
+    List<Long> findBlockedIdsByBlockerId(@Param("userId") Long userId);
+
+    @Query("SELECT b.blocker.id FROM Block b WHERE b.blocked.id = :userId")
+    List<Long> findBlockerIdsByBlockedId(@Param("userId") Long userId);
+
     @Modifying
     @Query("DELETE FROM Block b WHERE b.blocker.id = :userId")
     void deleteByBlockerId(@Param("userId") Long userId);
@@ -24,6 +24,9 @@ public interface ChatRequestRepository extends JpaRepository<ChatRequest, Long>
     @Query("SELECT cr FROM ChatRequest cr WHERE ((cr.sender = :user1 AND cr.receiver = :user2) OR (cr.sender = :user2 AND cr.receiver = :user1)) AND cr.status = :status")
     List<ChatRequest> findRequestsBetweenUsersWithStatus(@Param("user1") User user1, @Param("user2") User user2, @Param("status") ChatRequestStatus status);
 
+    @Query("SELECT COUNT(cr) > 0 FROM ChatRequest cr WHERE ((cr.sender.id = :userId1 AND cr.receiver.id = :userId2) OR (cr.sender.id = :userId2 AND cr.receiver.id = :userId1)) AND cr.status = :status")
+    boolean existsBetweenUsersWithStatus(@Param("userId1") Long userId1, @Param("userId2") Long userId2, @Param("status") ChatRequestStatus status);
+
     @Query("SELECT cr FROM ChatRequest cr WHERE cr.sender = :user OR cr.receiver = :user")
     List<ChatRequest> findBySenderOrReceiver(@Param("user") User user);
 
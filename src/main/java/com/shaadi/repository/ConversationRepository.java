@@ -0,0 +1,67 @@
+package com.shaadi.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.shaadi.dto.ConversationSummaryDto;
+import com.shaadi.entity.Conversation;
+import com.shaadi.entity.ConversationId;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ConversationRepository extends JpaRepository<Conversation, ConversationId> {
+
+    @Query("SELECT new com.shaadi.dto.ConversationSummaryDto(u.id, u.name, u.photoUrl, m.id, m.content, m.sender.id, m.sentAt, " +
+            "CASE WHEN c.id.lowUserId = :userId THEN c.lowUnreadCount ELSE c.highUnreadCount END) " +
+            "FROM Conversation c " +
+            "JOIN Message m ON m.id = c.lastMessageId " +
+            "JOIN User u ON u.id = CASE WHEN c.id.lowUserId = :userId THEN c.id.highUserId ELSE c.id.lowUserId END " +
+            "WHERE c.id.lowUserId = :userId OR c.id.highUserId = :userId " +
+            "ORDER BY c.lastMessageAt DESC")
+    List<ConversationSummaryDto> findSummariesForUser(@Param("userId") Long userId);
+
+    // Creates the conversation unless it already exists; returns 1 only for the caller that created it
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO conversation (low_user_id, high_user_id, low_unread_count, high_unread_count, chat_slot_consumed) " +
+            "VALUES (:lowUserId, :highUserId, 0, 0, :slotConsumed)", nativeQuery = true)
+    int openIfAbsent(@Param("lowUserId") Long lowUserId, @Param("highUserId") Long highUserId, @Param("slotConsumed") boolean slotConsumed);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageId = :messageId, c.lastMessageAt = :sentAt, " +
+            "c.lowUnreadCount = c.lowUnreadCount + CASE WHEN c.id.lowUserId = :receiverId THEN 1 ELSE 0 END, " +
+            "c.highUnreadCount = c.highUnreadCount + CASE WHEN c.id.highUserId = :receiverId THEN 1 ELSE 0 END " +
+            "WHERE c.id = :id")
+    int recordMessage(@Param("id") ConversationId id, @Param("messageId") Long messageId, @Param("sentAt") LocalDateTime sentAt, @Param("receiverId") Long receiverId);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET " +
+            "c.lowUnreadCount = CASE WHEN c.id.lowUserId = :receiverId THEN 0 ELSE c.lowUnreadCount END, " +
+            "c.highUnreadCount = CASE WHEN c.id.highUserId = :receiverId THEN 0 ELSE c.highUnreadCount END " +
+            "WHERE c.id = :id")
+    void markAsRead(@Param("id") ConversationId id, @Param("receiverId") Long receiverId);
+
+    // Point the conversation at its newest remaining message after a delete
+    @Modifying
+    @Query("UPDATE Conversation c SET " +
+            "c.lastMessageId = (SELECT MAX(m.id) FROM Message m WHERE m.lowUserId = c.id.lowUserId AND m.highUserId = c.id.highUserId), " +
+            "c.lastMessageAt = (SELECT MAX(m.sentAt) FROM Message m WHERE m.lowUserId = c.id.lowUserId AND m.highUserId = c.id.highUserId) " +
+            "WHERE c.lastMessageId = :messageId")
+    void refreshLastMessage(@Param("messageId") Long messageId);
+
+    @Modifying
+    @Query("DELETE FROM Conversation c WHERE c.id.lowUserId = :userId OR c.id.highUserId = :userId")
+    void deleteByUserId(@Param("userId") Long userId);
+
+    // One-off build from existing messages (requires Message.lowUserId/highUserId to be filled)
+    @Modifying
+    @Query(value = "INSERT INTO conversation (low_user_id, high_user_id, last_message_id, last_message_at, " +
+            "low_unread_count, high_unread_count, chat_slot_consumed) " +
+            "SELECT m.low_user_id, m.high_user_id, MAX(m.id), MAX(m.sent_at), " +
+            "SUM(CASE WHEN m.receiver_id = m.low_user_id AND m.is_read = false THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN m.receiver_id = m.high_user_id AND m.is_read = false THEN 1 ELSE 0 END), true " +
+            "FROM message m WHERE m.low_user_id IS NOT NULL GROUP BY m.low_user_id, m.high_user_id", nativeQuery = true)
+    int backfillFromMessages();
+}
@@ -8,6 +8,8 @@ import org.springframework.data.repository.query.Param;
 import com.shaadi.entity.Message;
 import com.shaadi.entity.User;
 
+import org.springframework.data.domain.Pageable;
+
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
@@ -31,6 +33,20 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     @Query("UPDATE Message m SET m.read = true WHERE m.receiver.id = :receiverId AND m.sender.id = :senderId AND m.read = false")
     void markAsRead(@Param("receiverId") Long receiverId, @Param("senderId") Long senderId);
 
-    @Query("SELECT COUNT(m) > 0 FROM Message m WHERE (m.sender.id = :userId AND m.receiver.id = :otherId) OR (m.sender.id = :otherId AND m.receiver.id = :userId)")
-    boolean hasConversationBetween(@Param("userId") Long userId, @Param("otherId") Long otherId);
+    // Both walk idx_message_pair_id (low_user_id, high_user_id, id) as a range scan
+    @Query("SELECT m FROM Message m WHERE m.lowUserId = :lowUserId AND m.highUserId = :highUserId AND m.id < :beforeId ORDER BY m.id DESC")
+    List<Message> findConversationBefore(@Param("lowUserId") Long lowUserId, @Param("highUserId") Long highUserId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.lowUserId = :lowUserId AND m.highUserId = :highUserId AND m.id > :afterId ORDER BY m.id ASC")
+    List<Message> findConversationAfter(@Param("lowUserId") Long lowUserId, @Param("highUserId") Long highUserId, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT MAX(m.id) FROM Message m")
+    Long findMaxId();
+
+    // Fills the ordered pair columns in one id range, for messages saved before they existed
+    @Modifying
+    @Query("UPDATE Message m SET m.lowUserId = CASE WHEN m.sender.id < m.receiver.id THEN m.sender.id ELSE m.receiver.id END, " +
+            "m.highUserId = CASE WHEN m.sender.id < m.receiver.id THEN m.receiver.id ELSE m.sender.id END " +
+            "WHERE m.id BETWEEN :fromId AND :toId AND (m.lowUserId IS NULL OR m.highUserId IS NULL)")
+    int backfillUserPairs(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
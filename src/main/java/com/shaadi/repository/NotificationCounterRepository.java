@@ -0,0 +1,41 @@
+package com.shaadi.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.shaadi.entity.NotificationCounter;
+
+public interface NotificationCounterRepository extends JpaRepository<NotificationCounter, Long> {
+
+    // Counts one new unread notification, which must already be inserted. The first one for a user
+    // creates the counter from the notifications table (so it includes itself); when another
+    // transaction created the row first, the insert turns into a plain increment instead of being lost.
+    @Modifying
+    @Query(value = "INSERT INTO notification_counter (user_id, unread_count) " +
+            "SELECT :userId, COUNT(*) FROM notifications n WHERE n.recipient_id = :userId AND n.is_read = false " +
+            "ON DUPLICATE KEY UPDATE unread_count = unread_count + 1", nativeQuery = true)
+    int increment(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE NotificationCounter c SET c.unreadCount = CASE WHEN c.unreadCount > :by THEN c.unreadCount - :by ELSE 0 END WHERE c.userId = :userId")
+    int decrement(@Param("userId") Long userId, @Param("by") int by);
+
+    @Modifying
+    @Query("UPDATE NotificationCounter c SET c.unreadCount = 0 WHERE c.userId = :userId")
+    int reset(@Param("userId") Long userId);
+
+    // Creates the counter from the notifications table unless another request already did
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO notification_counter (user_id, unread_count) " +
+            "SELECT :userId, COUNT(*) FROM notifications n WHERE n.recipient_id = :userId AND n.is_read = false", nativeQuery = true)
+    int seed(@Param("userId") Long userId);
+
+    // Drops counters of users holding unread notifications about the given user, so they are
+    // re-seeded after those notifications are deleted
+    @Modifying
+    @Query("DELETE FROM NotificationCounter c WHERE c.userId IN " +
+            "(SELECT n.recipient.id FROM Notification n WHERE n.relatedUser.id = :userId AND n.isRead = false)")
+    void deleteForUnreadAbout(@Param("userId") Long userId);
+}
@@ -1,13 +1,16 @@
 package com.shaadi.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.shaadi.entity.Notification;
+import com.shaadi.entity.NotificationType;
 import com.shaadi.entity.User;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
@@ -18,16 +21,39 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.recipient LEFT JOIN FETCH n.relatedUser WHERE n.recipient = :recipient AND n.isRead = :isRead ORDER BY n.createdAt DESC")
     List<Notification> findByRecipientAndIsReadOrderByCreatedAtDesc(User recipient, @Param("isRead") Boolean isRead);
 
+    // Inbox pages, newest first; the "before" variant continues below the last notification of a page
+    @Query("SELECT n FROM Notification n JOIN FETCH n.recipient LEFT JOIN FETCH n.relatedUser " +
+            "WHERE n.recipient.id = :recipientId ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findInbox(@Param("recipientId") Long recipientId, Pageable pageable);
+
+    @Query("SELECT n FROM Notification n JOIN FETCH n.recipient LEFT JOIN FETCH n.relatedUser " +
+            "WHERE n.recipient.id = :recipientId " +
+            "AND (n.createdAt < :beforeAt OR (n.createdAt = :beforeAt AND n.id < :beforeId)) " +
+            "ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findInboxBefore(@Param("recipientId") Long recipientId, @Param("beforeAt") LocalDateTime beforeAt, @Param("beforeId") Long beforeId, Pageable pageable);
+
     @Modifying
     @Query("UPDATE Notification n SET n.isRead = true WHERE n.recipient.id = :recipientId AND n.isRead = false")
-    void markAllAsRead(@Param("recipientId") Integer recipientId);
+    int markAllAsRead(@Param("recipientId") Integer recipientId);
 
+    // Returns 1 only when the notification went from unread to read
     @Modifying
-    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = :notificationId AND n.recipient.id = :recipientId")
-    void markAsRead(@Param("notificationId") Long notificationId, @Param("recipientId") Integer recipientId);
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.id = :notificationId AND n.recipient.id = :recipientId AND n.isRead = false")
+    int markAsRead(@Param("notificationId") Long notificationId, @Param("recipientId") Integer recipientId);
 
     long countByRecipientAndIsRead(User recipient, Boolean isRead);
 
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.recipient.id = :recipientId AND n.type = :type " +
+            "AND n.relatedUser.id = :relatedUserId AND n.isRead = :isRead")
+    int deleteByRecipientAndTypeAndRelatedUser(@Param("recipientId") Long recipientId, @Param("type") NotificationType type,
+                                               @Param("relatedUserId") Long relatedUserId, @Param("isRead") Boolean isRead);
+
+    // One retention chunk: read notifications older than the cutoff
+    @Modifying
+    @Query(value = "DELETE FROM notifications WHERE is_read = true AND created_at < :cutoff LIMIT :batchSize", nativeQuery = true)
+    int deleteReadBefore(@Param("cutoff") LocalDateTime cutoff, @Param("batchSize") int batchSize);
+
     @Modifying
     @Query("DELETE FROM Notification n WHERE n.recipient.id = :userId")
     void deleteByRecipientId(@Param("userId") Long userId);
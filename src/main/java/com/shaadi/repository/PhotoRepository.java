@@ -3,12 +3,27 @@ package com.shaadi.repository;
 import com.shaadi.entity.Photo;
 import com.shaadi.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface PhotoRepository extends JpaRepository<Photo, Long> {
     List<Photo> findByUser(User user);
     void deleteByUser(User user);
+
+    // Photos beyond the first (oldest) one of each given user that no longer has an active subscription.
+    // Selected first and deleted by id because MySQL can't delete from a table its own subquery reads.
+    @Query("SELECT p.id FROM Photo p WHERE p.user.id IN :userIds " +
+            "AND p.id > (SELECT MIN(kept.id) FROM Photo kept WHERE kept.user.id = p.user.id) " +
+            "AND NOT EXISTS (SELECT s.id FROM Subscription s WHERE s.user.id = p.user.id AND s.status = com.shaadi.entity.SubscriptionStatus.ACTIVE)")
+    List<Long> findExcessPhotoIds(@Param("userIds") Collection<Long> userIds);
+
+    @Modifying
+    @Query("DELETE FROM Photo p WHERE p.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -1,14 +1,17 @@
 package com.shaadi.repository;
 
+import com.shaadi.dto.SubscriptionResponseDto;
 import com.shaadi.entity.Subscription;
 import com.shaadi.entity.SubscriptionStatus;
 import com.shaadi.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,8 +19,51 @@ import java.util.Optional;
 public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
     List<Subscription> findByUserAndStatus(User user, SubscriptionStatus status);
     Optional<Subscription> findFirstByUserAndStatusOrderByExpiryDateDesc(User user, SubscriptionStatus status);
+    Optional<Subscription> findFirstByUserIdAndStatusOrderByExpiryDateDesc(Long userId, SubscriptionStatus status);
     List<Subscription> findByStatusAndExpiryDateBefore(SubscriptionStatus status, java.time.LocalDateTime expiryDate);
-    List<Subscription> findByUserOrderByStartDateDesc(User user);
+
+    // Response DTOs built straight from one subscription/plan join, without loading entities
+    @Query("SELECT new com.shaadi.dto.SubscriptionResponseDto(s.id, s.user.id, p.id, p.name, p.durationMonths, p.chatLimit, " +
+            "s.startDate, s.expiryDate, s.status, s.chatLimit) FROM Subscription s JOIN s.plan p " +
+            "WHERE s.user.id = :userId AND s.status = com.shaadi.entity.SubscriptionStatus.ACTIVE ORDER BY s.expiryDate DESC")
+    List<SubscriptionResponseDto> findActiveDtos(@Param("userId") Long userId, Pageable pageable);
+
+    // History pages, newest first; the "before" variant continues below the last subscription of a page
+    @Query("SELECT new com.shaadi.dto.SubscriptionResponseDto(s.id, s.user.id, p.id, p.name, p.durationMonths, p.chatLimit, " +
+            "s.startDate, s.expiryDate, s.status, s.chatLimit) FROM Subscription s JOIN s.plan p " +
+            "WHERE s.user.id = :userId ORDER BY s.startDate DESC, s.id DESC")
+    List<SubscriptionResponseDto> findHistoryDtos(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT new com.shaadi.dto.SubscriptionResponseDto(s.id, s.user.id, p.id, p.name, p.durationMonths, p.chatLimit, " +
+            "s.startDate, s.expiryDate, s.status, s.chatLimit) FROM Subscription s JOIN s.plan p " +
+            "WHERE s.user.id = :userId AND (s.startDate < :beforeStart OR (s.startDate = :beforeStart AND s.id < :beforeId)) " +
+            "ORDER BY s.startDate DESC, s.id DESC")
+    List<SubscriptionResponseDto> findHistoryDtosBefore(@Param("userId") Long userId, @Param("beforeStart") LocalDateTime beforeStart, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    @Query("SELECT s.startDate FROM Subscription s WHERE s.id = :id AND s.user.id = :userId")
+    Optional<LocalDateTime> findStartDate(@Param("id") Long id, @Param("userId") Long userId);
+
+    // Takes one chat slot if any are left; returns 0 when the limit is already reached
+    @Modifying
+    @Query("UPDATE Subscription s SET s.usedChatSlots = COALESCE(s.usedChatSlots, 0) + 1 " +
+            "WHERE s.id = :id AND s.status = com.shaadi.entity.SubscriptionStatus.ACTIVE AND COALESCE(s.usedChatSlots, 0) < s.chatLimit")
+    int consumeChatSlot(@Param("id") Long id);
+
+    // Next chunk of the expiry job: [subscription id, user id] of ACTIVE rows past their expiry, after afterId
+    @Query("SELECT s.id, s.user.id FROM Subscription s WHERE s.status = com.shaadi.entity.SubscriptionStatus.ACTIVE " +
+            "AND s.expiryDate < :now AND s.id > :afterId ORDER BY s.id")
+    List<Object[]> findExpiredChunk(@Param("now") LocalDateTime now, @Param("afterId") Long afterId, Pageable pageable);
+
+    // Feeds ExpiryScheduler: [subscription id, user id, expiry date] of ACTIVE rows expiring before "until", soonest first
+    @Query("SELECT s.id, s.user.id, s.expiryDate FROM Subscription s WHERE s.status = com.shaadi.entity.SubscriptionStatus.ACTIVE " +
+            "AND s.expiryDate < :until ORDER BY s.expiryDate")
+    List<Object[]> findExpiringBefore(@Param("until") LocalDateTime until, Pageable pageable);
+
+    // Expires one id range; the status and expiry checks are repeated so a subscription renewed in the meantime is skipped
+    @Modifying
+    @Query("UPDATE Subscription s SET s.status = com.shaadi.entity.SubscriptionStatus.EXPIRED, s.usedChatSlots = 0, s.chatLimit = 0 " +
+            "WHERE s.id BETWEEN :fromId AND :toId AND s.status = com.shaadi.entity.SubscriptionStatus.ACTIVE AND s.expiryDate < :now")
+    int expireRange(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("now") LocalDateTime now);
 
     @Modifying
     @Query("DELETE FROM Subscription s WHERE s.user.id = :userId")
@@ -2,13 +2,46 @@ package com.shaadi.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import com.shaadi.dto.ProfileFacetsDto;
+import com.shaadi.dto.UserCardDto;
 import com.shaadi.entity.User;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
     Optional<User> findByEmail(String email);
     Optional<User> findByFirebaseUid(String firebaseUid);
     Optional<User> findByMobileNumber(String mobileNumber);
+
+    @Query("SELECT new com.shaadi.dto.ProfileFacetsDto(u.id, u.gender, u.religion, u.caste, u.motherTongue, u.maritalStatus, " +
+           "u.diet, u.manglik, u.state, u.age, u.height, u.annualIncome) FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<ProfileFacetsDto> findProfileFacetsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Id, name and photo of the given users, without loading the User graph
+    @Query("SELECT new com.shaadi.dto.UserCardDto(u.id, u.name, u.photoUrl) FROM User u WHERE u.id IN :ids")
+    List<UserCardDto> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MAX(u.id) FROM User u")
+    Long findMaxId();
+
+    // Fills the normalized search columns in one id range, touching only rows saved before they existed
+    @Modifying
+    @Query("UPDATE User u SET u.religionKey = LOWER(TRIM(u.religion)), u.cityTownKey = LOWER(TRIM(u.cityTown)), " +
+           "u.districtKey = LOWER(TRIM(u.district)), u.stateKey = LOWER(TRIM(u.state)), " +
+           "u.casteKey = LOWER(TRIM(u.caste)), u.motherTongueKey = LOWER(TRIM(u.motherTongue)), " +
+           "u.maritalStatusKey = LOWER(TRIM(u.maritalStatus)), u.dietKey = LOWER(TRIM(u.diet)) " +
+           "WHERE u.id BETWEEN :fromId AND :toId AND (" +
+           "(u.religion IS NOT NULL AND u.religionKey IS NULL) OR (u.cityTown IS NOT NULL AND u.cityTownKey IS NULL) " +
+           "OR (u.district IS NOT NULL AND u.districtKey IS NULL) OR (u.state IS NOT NULL AND u.stateKey IS NULL) " +
+           "OR (u.caste IS NOT NULL AND u.casteKey IS NULL) OR (u.motherTongue IS NOT NULL AND u.motherTongueKey IS NULL) " +
+           "OR (u.maritalStatus IS NOT NULL AND u.maritalStatusKey IS NULL) OR (u.diet IS NOT NULL AND u.dietKey IS NULL))")
+    int backfillSearchKeys(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
@@ -0,0 +1,160 @@
+package com.shaadi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.shaadi.repository.BlockRepository;
+import com.shaadi.util.AfterCommit;
+import com.shaadi.util.LongHashSet;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-memory view of the block graph for recently active users.
+// Each entry holds who the user blocked and who blocked them, loaded lazily from
+// BlockRepository and kept current by blockUser/unblockUser/deleteUser (after commit).
+// Bounded by user count with LRU eviction.
+@Component
+public class BlockGraphCache {
+    private final BlockRepository blockRepo;
+    private final int maxUsers;
+
+    // Access-ordered map gives LRU eviction; all access is guarded by "this"
+    private final LinkedHashMap<Long, Edges> entries;
+
+    // Bumped on every write so a load that raced with a write is not cached
+    private long writeEpoch;
+
+    public BlockGraphCache(BlockRepository blockRepo, @Value("${shaadi.cache.block-graph.max-users:10000}") int maxUsers) {
+        this.blockRepo = blockRepo;
+        this.maxUsers = maxUsers;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Edges> eldest) {
+                return size() > BlockGraphCache.this.maxUsers;
+            }
+        };
+    }
+
+    public boolean isBlocked(Long blockerId, Long blockedId) {
+        Edges edges = edges(blockerId);
+        synchronized (this) {
+            return edges.blocked.contains(blockedId);
+        }
+    }
+
+    public boolean isBlockedEitherWay(Long userId, Long otherUserId) {
+        Edges edges = edges(userId);
+        synchronized (this) {
+            return edges.blocked.contains(otherUserId) || edges.blockedBy.contains(otherUserId);
+        }
+    }
+
+    // Every user blocked by or blocking the given user
+    public long[] blockedEitherWay(Long userId) {
+        Edges edges = edges(userId);
+        synchronized (this) {
+            long[] blocked = edges.blocked.toArray();
+            long[] blockedBy = edges.blockedBy.toArray();
+            long[] all = Arrays.copyOf(blocked, blocked.length + blockedBy.length);
+            System.arraycopy(blockedBy, 0, all, blocked.length, blockedBy.length);
+            return all;
+        }
+    }
+
+    public void onBlock(Long blockerId, Long blockedId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                Edges blocker = entries.get(blockerId);
+                if (blocker != null) {
+                    blocker.blocked.add(blockedId);
+                }
+                Edges blocked = entries.get(blockedId);
+                if (blocked != null) {
+                    blocked.blockedBy.add(blockerId);
+                }
+            }
+        });
+    }
+
+    public void onUnblock(Long blockerId, Long blockedId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                Edges blocker = entries.get(blockerId);
+                if (blocker != null) {
+                    blocker.blocked.remove(blockedId);
+                }
+                Edges blocked = entries.get(blockedId);
+                if (blocked != null) {
+                    blocked.blockedBy.remove(blockerId);
+                }
+            }
+        });
+    }
+
+    public void onUserDeleted(Long userId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                entries.remove(userId);
+                for (Edges edges : entries.values()) {
+                    edges.blocked.remove(userId);
+                    edges.blockedBy.remove(userId);
+                }
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private Edges edges(long userId) {
+        long epoch;
+        synchronized (this) {
+            Edges cached = entries.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            epoch = writeEpoch;
+        }
+
+        // Load outside the lock so a slow query doesn't stall every other lookup
+        Edges loaded = new Edges(
+                toSet(blockRepo.findBlockedIdsByBlockerId(userId)),
+                toSet(blockRepo.findBlockerIdsByBlockedId(userId)));
+
+        synchronized (this) {
+            Edges cached = entries.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            if (epoch == writeEpoch) {
+                entries.put(userId, loaded);
+            }
+            return loaded;
+        }
+    }
+
+    private static LongHashSet toSet(List<Long> ids) {
+        LongHashSet set = new LongHashSet(ids.size());
+        for (Long id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    private static class Edges {
+        private final LongHashSet blocked;   // users this user blocked
+        private final LongHashSet blockedBy; // users who blocked this user
+
+        private Edges(LongHashSet blocked, LongHashSet blockedBy) {
+            this.blocked = blocked;
+            this.blockedBy = blockedBy;
+        }
+    }
+}
@@ -1,113 +1,149 @@
 package com.shaadi.service;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.shaadi.dto.ChatFrame;
+import com.shaadi.dto.ConversationSummaryDto;
+import com.shaadi.dto.MessageDto;
+import com.shaadi.dto.UserCardDto;
 import com.shaadi.entity.ChatRequest;
 import com.shaadi.entity.ChatRequestStatus;
+import com.shaadi.entity.ConversationId;
 import com.shaadi.entity.Message;
 import com.shaadi.entity.Notification;
 import com.shaadi.entity.NotificationType;
-import com.shaadi.entity.Subscription;
-import com.shaadi.entity.SubscriptionStatus;
 import com.shaadi.entity.User;
 import com.shaadi.repository.ChatRequestRepository;
+import com.shaadi.repository.ConversationRepository;
 import com.shaadi.repository.MessageRepository;
 import com.shaadi.repository.SubscriptionRepository;
 import com.shaadi.repository.UserRepository;
+import com.shaadi.service.ChatSessionCache.ChatSession;
+import com.shaadi.service.EntitlementCache.Entitlement;
+import com.shaadi.util.AfterCommit;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 @Transactional
 public class ChatService {
+    public static final int MAX_CONVERSATION_PAGE_SIZE = 100;
+
     private final MessageRepository messageRepo;
     private final UserRepository userRepo;
     private final SubscriptionRepository subscriptionRepo;
     private final ChatRequestRepository chatRequestRepo;
+    private final ConversationRepository conversationRepo;
     private final NotificationService notificationService;
     private final UserService userService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ChatSessionCache chatSessionCache;
+    private final StompFrameSender frameSender;
+    private final EntitlementCache entitlementCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${shaadi.chat.backfill.chunk-size:5000}")
+    private int backfillChunkSize;
 
-    public ChatService(MessageRepository messageRepo, UserRepository userRepo, SubscriptionRepository subscriptionRepo, ChatRequestRepository chatRequestRepo, NotificationService notificationService, UserService userService, SimpMessagingTemplate messagingTemplate) {
+    public ChatService(MessageRepository messageRepo, UserRepository userRepo, SubscriptionRepository subscriptionRepo, ChatRequestRepository chatRequestRepo, ConversationRepository conversationRepo, NotificationService notificationService, UserService userService, SimpMessagingTemplate messagingTemplate, ChatSessionCache chatSessionCache, StompFrameSender frameSender, EntitlementCache entitlementCache, PlatformTransactionManager transactionManager) {
         this.messageRepo = messageRepo;
         this.userRepo = userRepo;
         this.subscriptionRepo = subscriptionRepo;
         this.chatRequestRepo = chatRequestRepo;
+        this.conversationRepo = conversationRepo;
         this.notificationService = notificationService;
         this.userService = userService;
         this.messagingTemplate = messagingTemplate;
+        this.chatSessionCache = chatSessionCache;
+        this.frameSender = frameSender;
+        this.entitlementCache = entitlementCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    public Message sendMessage(Message message) {
+    // Returns the frame pushed to both users; sender and receiver on the saved message are only references
+    public ChatFrame sendMessage(Message message) {
         // Ensure sender and receiver are valid users
         if (message.getSender() == null || message.getReceiver() == null) {
             throw new IllegalArgumentException("Sender and receiver must be provided");
         }
 
-        // Load full sender and receiver entities
-        User sender = userRepo.findById(message.getSender().getId())
-                .orElseThrow(() -> new IllegalArgumentException("Sender not found"));
-        User receiver = userRepo.findById(message.getReceiver().getId())
-                .orElseThrow(() -> new IllegalArgumentException("Receiver not found"));
-        message.setSender(sender);
-        message.setReceiver(receiver);
+        // Participants, request status and both subscriptions come from one cached session read
+        Long senderId = message.getSender().getId();
+        Long receiverId = message.getReceiver().getId();
+        ChatSession session = chatSessionCache.get(senderId, receiverId);
+        UserCardDto sender = session.card(senderId);
+        UserCardDto receiver = session.card(receiverId);
+        // Foreign keys only; the users were already checked when the session was loaded
+        message.setSender(userRepo.getReferenceById(senderId));
+        message.setReceiver(userRepo.getReferenceById(receiverId));
 
         // Check if chat request is accepted
-        if (!canChat(sender.getId(), receiver.getId())) {
+        if (!session.isAccepted()) {
             throw new IllegalStateException("Chat request not accepted");
         }
+        if (userService.isBlockedEitherWay(senderId, receiverId)) {
+            throw new IllegalStateException("You cannot chat with this user");
+        }
 
         // Check if sender has an active subscription
-        Optional<Subscription> activeSub = subscriptionRepo.findFirstByUserAndStatusOrderByExpiryDateDesc(sender, SubscriptionStatus.ACTIVE);
-        if (activeSub.isEmpty() || activeSub.get().getExpiryDate().isBefore(LocalDateTime.now())) {
+        LocalDateTime now = LocalDateTime.now();
+        Entitlement senderEntitlement = session.entitlement(senderId);
+        if (senderEntitlement == null || !senderEntitlement.isActive(now)) {
             throw new IllegalStateException("Active subscription required to chat");
         }
 
-        // Check chat limit using slot-based system
-        Subscription subscription = activeSub.get();
-        Integer totalSlots = subscription.getChatLimit();
-        if (totalSlots != null && totalSlots > 0) {
-            // Check if this is a new conversation for the sender
-            boolean isNewConversation = !messageRepo.hasConversationBetween(sender.getId(), receiver.getId());
-            if (isNewConversation) {
-                Integer usedSlots = subscription.getUsedChatSlots() != null ? subscription.getUsedChatSlots() : 0;
-                if (usedSlots >= totalSlots) {
-                    throw new IllegalStateException("Chat limit reached for your plan. Upgrade to chat with more users.");
-                }
-                // Consume a chat slot
-                subscription.setUsedChatSlots(usedSlots + 1);
-                subscriptionRepo.save(subscription);
+        // Check chat limit using slot-based system; only the first message of a conversation costs a slot.
+        // Whoever inserts the conversation row opens it, and the slot is taken with a conditional
+        // update, so parallel first messages can neither open it twice nor overrun the limit.
+        ConversationId conversationId = ConversationId.of(senderId, receiverId);
+        Integer totalSlots = senderEntitlement.getChatLimit();
+        boolean slotRequired = totalSlots != null && totalSlots > 0;
+        if (!session.isConversationStarted() && conversationRepo.openIfAbsent(conversationId.getLowUserId(), conversationId.getHighUserId(), slotRequired) == 1) {
+            if (slotRequired && subscriptionRepo.consumeChatSlot(senderEntitlement.getSubscriptionId()) == 0) {
+                // Rolls back the conversation row opened above
+                throw new IllegalStateException("Chat limit reached for your plan. Upgrade to chat with more users.");
+            }
+            if (slotRequired) {
+                // The snapshot's used-slot count is now behind
+                entitlementCache.invalidate(senderId);
             }
         }
 
         // Check if receiver has an active subscription
-        Optional<Subscription> receiverSub = subscriptionRepo.findFirstByUserAndStatusOrderByExpiryDateDesc(receiver, SubscriptionStatus.ACTIVE);
-        if (receiverSub.isEmpty() || receiverSub.get().getExpiryDate().isBefore(LocalDateTime.now())) {
+        Entitlement receiverEntitlement = session.entitlement(receiverId);
+        if (receiverEntitlement == null || !receiverEntitlement.isActive(now)) {
             // Send default message to non-subscribed receiver
             message.setContent(sender.getName() + " want to send you a message, to start conversation please purchase a plan");
         }
 
         Message savedMessage = messageRepo.save(message);
+        recordInConversation(conversationId, savedMessage);
+        AfterCommit.run(session::markConversationStarted);
 
-        // Broadcast the message via WebSocket to both sender and receiver
-        System.out.println("📤 Broadcasting message to receiver: " + savedMessage.getReceiver().getId());
-        messagingTemplate.convertAndSendToUser(
-            String.valueOf(savedMessage.getReceiver().getId()),
-            "/queue/messages",
-            savedMessage
-        );
-        System.out.println("📤 Broadcasting message to sender: " + savedMessage.getSender().getId());
-        messagingTemplate.convertAndSendToUser(
-            String.valueOf(savedMessage.getSender().getId()),
-            "/queue/messages",
-            savedMessage
-        );
+        // Broadcast the message via WebSocket to both sender and receiver, serialized once
+        System.out.println("📤 Broadcasting message to receiver " + receiverId + " and sender " + senderId);
+        ChatFrame frame = toFrame(savedMessage, sender, receiver);
+        frameSender.sendToUsers("/queue/messages", frame, receiverId, senderId);
 
-        return savedMessage;
+        return frame;
+    }
+
+    // Keep the conversation row in step with the message just saved
+    private void recordInConversation(ConversationId conversationId, Message message) {
+        conversationRepo.recordMessage(conversationId, message.getId(), message.getSentAt(), message.getReceiver().getId());
     }
 
     public Optional<Message> findById(Long id) {
@@ -122,14 +158,92 @@ public class ChatService {
                 .filter(message -> {
                     Long otherUserId = message.getSender().getId().equals(user.getId()) ?
                             message.getReceiver().getId() : message.getSender().getId();
-                    return !userService.isBlocked(user.getId(), otherUserId) &&
-                           !userService.isBlocked(otherUserId, user.getId());
+                    return !userService.isBlockedEitherWay(user.getId(), otherUserId);
                 })
                 .toList();
     }
 
+    // Conversation list: one row per partner, read from the conversation table
+    public List<ConversationSummaryDto> getConversationsForUser(Long userId) {
+        return conversationRepo.findSummariesForUser(userId).stream()
+                .filter(row -> !userService.isBlockedEitherWay(userId, row.getPartnerId()))
+                .toList();
+    }
+
+    // Messages between two users, newest first. "before" pages back through history,
+    // "after" fetches what arrived since the newest message the client already has.
+    public List<MessageDto> getConversation(Long userId, Long partnerId, Long beforeId, Long afterId, int limit) {
+        if (beforeId != null && afterId != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+        if (userService.isBlockedEitherWay(userId, partnerId)) {
+            return List.of();
+        }
+        Long lowUserId = Math.min(userId, partnerId);
+        Long highUserId = Math.max(userId, partnerId);
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_CONVERSATION_PAGE_SIZE)));
+
+        List<Message> messages;
+        if (afterId != null) {
+            messages = new ArrayList<>(messageRepo.findConversationAfter(lowUserId, highUserId, afterId, page));
+            Collections.reverse(messages);
+        } else {
+            messages = messageRepo.findConversationBefore(lowUserId, highUserId, beforeId != null ? beforeId : Long.MAX_VALUE, page);
+        }
+        return messages.stream().map(this::toDto).toList();
+    }
+
+    // Fills the ordered pair columns and the conversation table for data written before they existed.
+    // The pair columns are filled in primary-key ranges, one short transaction each, touching only
+    // rows where they are still NULL, so once everything is filled a start costs a few range reads.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void backfillUserPairs() {
+        Long maxId = messageRepo.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+        // A zero or negative chunk size would never advance and hang startup
+        int chunkSize = Math.max(1, backfillChunkSize);
+        int updated = 0;
+        for (long fromId = 1; fromId <= maxId; fromId += chunkSize) {
+            long toId = fromId + chunkSize - 1;
+            long from = fromId;
+            updated += transactionTemplate.execute(status -> messageRepo.backfillUserPairs(from, toId));
+        }
+        if (updated > 0) {
+            System.out.println("✅ Backfilled conversation pair for " + updated + " messages");
+        }
+        // First start with the conversation table: build it from message history
+        if (conversationRepo.count() == 0) {
+            int created = transactionTemplate.execute(status -> conversationRepo.backfillFromMessages());
+            System.out.println("✅ Built " + created + " conversations from message history");
+        }
+    }
+
+    private static ChatFrame toFrame(Message message, UserCardDto sender, UserCardDto receiver) {
+        return new ChatFrame(
+                message.getId(),
+                sender,
+                receiver,
+                message.getContent(),
+                message.getSentAt(),
+                message.getRead());
+    }
+
+    private MessageDto toDto(Message message) {
+        return new MessageDto(
+                message.getId(),
+                message.getSender().getId(),
+                message.getReceiver().getId(),
+                message.getContent(),
+                message.getSentAt(),
+                message.getRead());
+    }
+
     public void deleteMessage(Long id) {
         messageRepo.deleteById(id);
+        conversationRepo.refreshLastMessage(id);
     }
 
     public Message sendMessageAsAdmin(Message message) {
@@ -139,11 +253,16 @@ public class ChatService {
         }
 
         // Admin can send messages without subscription checks
-        return messageRepo.save(message);
+        ConversationId conversationId = ConversationId.of(message.getSender().getId(), message.getReceiver().getId());
+        conversationRepo.openIfAbsent(conversationId.getLowUserId(), conversationId.getHighUserId(), false);
+        Message savedMessage = messageRepo.save(message);
+        recordInConversation(conversationId, savedMessage);
+        return savedMessage;
     }
 
     public void markMessagesAsRead(User receiver, User sender) {
         messageRepo.markAsRead(receiver.getId(), sender.getId());
+        conversationRepo.markAsRead(ConversationId.of(receiver.getId(), sender.getId()), receiver.getId());
     }
 
     public ChatRequest sendRequest(Long senderId, Long receiverId) {
@@ -181,8 +300,8 @@ public class ChatService {
             savedRequest
         );
 
-        // Create notification for the receiver
-        notificationService.createNotification(
+        // Create notification for the receiver (digested during bursts)
+        notificationService.createOrDigestNotification(
             NotificationType.REQUEST_RECEIVED,
             sender.getName() + " sends a request",
             receiver,
@@ -214,9 +333,10 @@ public class ChatService {
 
         request.setStatus(ChatRequestStatus.ACCEPTED);
         ChatRequest savedRequest = chatRequestRepo.save(request);
+        chatSessionCache.invalidatePair(request.getSender().getId(), request.getReceiver().getId());
 
-        // Create notification for the sender
-        notificationService.createNotification(
+        // Create notification for the sender (digested during bursts)
+        notificationService.createOrDigestNotification(
             NotificationType.REQUEST_ACCEPTED,
             request.getReceiver().getName() + " accepted your request",
             request.getSender(),
@@ -250,6 +370,7 @@ public class ChatService {
         );
 
         chatRequestRepo.delete(request);
+        chatSessionCache.invalidatePair(request.getSender().getId(), request.getReceiver().getId());
     }
 
     public void cancelRequest(long requestId, int userId) {
@@ -271,6 +392,7 @@ public class ChatService {
         notificationService.deleteRequestReceivedNotification(request.getSender(), request.getReceiver());
 
         chatRequestRepo.delete(request);
+        chatSessionCache.invalidatePair(request.getSender().getId(), request.getReceiver().getId());
     }
 
     public List<ChatRequest> getPendingRequestsForUser(Long userId) {
@@ -291,19 +413,12 @@ public class ChatService {
                 .filter(request -> {
                     Long otherUserId = request.getSender().getId().equals(userId) ?
                             request.getReceiver().getId() : request.getSender().getId();
-                    return !userService.isBlocked(userId, otherUserId) &&
-                           !userService.isBlocked(otherUserId, userId);
+                    return !userService.isBlockedEitherWay(userId, otherUserId);
                 })
                 .toList();
     }
 
     public boolean canChat(Long userId1, Long userId2) {
-        User user1 = userRepo.findById(userId1)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        User user2 = userRepo.findById(userId2)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        List<ChatRequest> acceptedRequests = chatRequestRepo.findRequestsBetweenUsersWithStatus(user1, user2, ChatRequestStatus.ACCEPTED);
-        return !acceptedRequests.isEmpty();
+        return chatRequestRepo.existsBetweenUsersWithStatus(userId1, userId2, ChatRequestStatus.ACCEPTED);
     }
 }
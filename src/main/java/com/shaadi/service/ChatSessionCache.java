@@ -0,0 +1,178 @@
+package com.shaadi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.shaadi.dto.UserCardDto;
+import com.shaadi.entity.ChatRequestStatus;
+import com.shaadi.entity.ConversationId;
+import com.shaadi.repository.ChatRequestRepository;
+import com.shaadi.repository.ConversationRepository;
+import com.shaadi.repository.UserRepository;
+import com.shaadi.service.EntitlementCache.Entitlement;
+import com.shaadi.util.AfterCommit;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Everything sendMessage needs to know about a pair of users, read once per conversation:
+// id, name and photo of both participants, whether a chat request between them was accepted, each side's
+// active subscription (from EntitlementCache) and whether the conversation already exists.
+// Entries are dropped (after commit) when a request, subscription or profile changes.
+// Bounded by pair count with LRU eviction.
+@Component
+public class ChatSessionCache {
+    private final UserRepository userRepo;
+    private final ChatRequestRepository chatRequestRepo;
+    private final EntitlementCache entitlementCache;
+    private final ConversationRepository conversationRepo;
+    private final int maxSessions;
+
+    // Access-ordered map gives LRU eviction; all access is guarded by "this"
+    private final LinkedHashMap<ConversationId, ChatSession> sessions;
+
+    // Bumped on every invalidation so a load that raced with a write is not cached
+    private long writeEpoch;
+
+    public ChatSessionCache(UserRepository userRepo, ChatRequestRepository chatRequestRepo, EntitlementCache entitlementCache, ConversationRepository conversationRepo, @Value("${shaadi.cache.chat-session.max-sessions:20000}") int maxSessions) {
+        this.userRepo = userRepo;
+        this.chatRequestRepo = chatRequestRepo;
+        this.entitlementCache = entitlementCache;
+        this.conversationRepo = conversationRepo;
+        this.maxSessions = maxSessions;
+        this.sessions = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ConversationId, ChatSession> eldest) {
+                return size() > ChatSessionCache.this.maxSessions;
+            }
+        };
+    }
+
+    public ChatSession get(Long userId, Long otherUserId) {
+        ConversationId id = ConversationId.of(userId, otherUserId);
+        long epoch;
+        synchronized (this) {
+            ChatSession cached = sessions.get(id);
+            if (cached != null) {
+                return cached;
+            }
+            epoch = writeEpoch;
+        }
+
+        ChatSession loaded = load(id);
+
+        synchronized (this) {
+            ChatSession cached = sessions.get(id);
+            if (cached != null) {
+                return cached;
+            }
+            if (epoch == writeEpoch) {
+                sessions.put(id, loaded);
+            }
+            return loaded;
+        }
+    }
+
+    // Request accepted, rejected or cancelled between the two users
+    public void invalidatePair(Long userId, Long otherUserId) {
+        ConversationId id = ConversationId.of(userId, otherUserId);
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                sessions.remove(id);
+            }
+        });
+    }
+
+    // Subscription or profile of the user changed, or the user was deleted
+    public void invalidateUser(Long userId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                sessions.keySet().removeIf(id -> id.getLowUserId().equals(userId) || id.getHighUserId().equals(userId));
+            }
+        });
+    }
+
+    // Same as invalidateUser for many users, in one pass over the cache
+    public void invalidateUsers(Collection<Long> userIds) {
+        Set<Long> ids = new HashSet<>(userIds);
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                sessions.keySet().removeIf(id -> ids.contains(id.getLowUserId()) || ids.contains(id.getHighUserId()));
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    private ChatSession load(ConversationId id) {
+        List<UserCardDto> cards = userRepo.findCardsByIdIn(List.of(id.getLowUserId(), id.getHighUserId()));
+        UserCardDto low = cards.stream().filter(card -> card.getId().equals(id.getLowUserId())).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        UserCardDto high = cards.stream().filter(card -> card.getId().equals(id.getHighUserId())).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        boolean accepted = chatRequestRepo.existsBetweenUsersWithStatus(low.getId(), high.getId(), ChatRequestStatus.ACCEPTED);
+        return new ChatSession(low, high, accepted,
+                entitlementCache.get(low.getId()), entitlementCache.get(high.getId()),
+                conversationRepo.existsById(id));
+    }
+
+    // Holds plain values only, never entities, so sessions can be shared between threads
+    public static class ChatSession {
+        private final Long lowUserId;
+        private final String lowName;
+        private final String lowPhotoUrl;
+        private final Long highUserId;
+        private final String highName;
+        private final String highPhotoUrl;
+        private final boolean accepted;
+        private final Entitlement lowEntitlement;
+        private final Entitlement highEntitlement;
+        private volatile boolean conversationStarted;
+
+        private ChatSession(UserCardDto low, UserCardDto high, boolean accepted, Entitlement lowEntitlement, Entitlement highEntitlement, boolean conversationStarted) {
+            this.lowUserId = low.getId();
+            this.lowName = low.getName();
+            this.lowPhotoUrl = low.getPhotoUrl();
+            this.highUserId = high.getId();
+            this.highName = high.getName();
+            this.highPhotoUrl = high.getPhotoUrl();
+            this.accepted = accepted;
+            this.lowEntitlement = lowEntitlement;
+            this.highEntitlement = highEntitlement;
+            this.conversationStarted = conversationStarted;
+        }
+
+        // A fresh card on every call, so callers may keep or change it
+        public UserCardDto card(Long userId) {
+            return lowUserId.equals(userId)
+                    ? new UserCardDto(lowUserId, lowName, lowPhotoUrl)
+                    : new UserCardDto(highUserId, highName, highPhotoUrl);
+        }
+
+        public boolean isAccepted() {
+            return accepted;
+        }
+
+        // Active subscription of the user, or null when there is none
+        public Entitlement entitlement(Long userId) {
+            return lowUserId.equals(userId) ? lowEntitlement : highEntitlement;
+        }
+
+        public boolean isConversationStarted() {
+            return conversationStarted;
+        }
+
+        public void markConversationStarted() {
+            conversationStarted = true;
+        }
+    }
+}
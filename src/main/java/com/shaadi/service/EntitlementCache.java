@@ -0,0 +1,172 @@
+package com.shaadi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.shaadi.entity.Subscription;
+import com.shaadi.entity.SubscriptionStatus;
+import com.shaadi.repository.SubscriptionRepository;
+import com.shaadi.util.AfterCommit;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Each user's active subscription as a small immutable snapshot, read once instead of querying
+// for the newest ACTIVE subscription on every check. Users without one are cached too.
+// Entries are dropped (after commit) on purchase, give, revoke, expiry and slot use; the age of
+// the snapshot served on each hit is recorded so staleness shows up in metrics.
+// Bounded by user count with LRU eviction.
+@Component
+public class EntitlementCache {
+    private final SubscriptionRepository subscriptionRepo;
+    private final int maxUsers;
+
+    // Access-ordered map gives LRU eviction; all access is guarded by "this"
+    private final LinkedHashMap<Long, Entitlement> entitlements;
+
+    // Bumped on every invalidation so a load that raced with a write is not cached
+    private long writeEpoch;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    private final Timer age;
+
+    public EntitlementCache(SubscriptionRepository subscriptionRepo, MeterRegistry meterRegistry,
+                            @Value("${shaadi.cache.entitlements.max-users:50000}") int maxUsers) {
+        this.subscriptionRepo = subscriptionRepo;
+        this.maxUsers = maxUsers;
+        this.entitlements = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entitlement> eldest) {
+                return size() > EntitlementCache.this.maxUsers;
+            }
+        };
+
+        this.hits = meterRegistry.counter("shaadi.entitlements.cache", "result", "hit");
+        this.misses = meterRegistry.counter("shaadi.entitlements.cache", "result", "miss");
+        this.invalidations = meterRegistry.counter("shaadi.entitlements.invalidations");
+        this.age = Timer.builder("shaadi.entitlements.age")
+                .description("Age of the snapshot served on a cache hit")
+                .register(meterRegistry);
+        Gauge.builder("shaadi.entitlements.size", this, EntitlementCache::size).register(meterRegistry);
+    }
+
+    // Active subscription of the user, or null when there is none
+    public Entitlement get(Long userId) {
+        long epoch;
+        synchronized (this) {
+            Entitlement cached = entitlements.get(userId);
+            if (cached != null) {
+                hits.increment();
+                age.record(System.currentTimeMillis() - cached.loadedAt, TimeUnit.MILLISECONDS);
+                return cached.isNone() ? null : cached;
+            }
+            epoch = writeEpoch;
+        }
+        misses.increment();
+
+        Entitlement loaded = subscriptionRepo.findFirstByUserIdAndStatusOrderByExpiryDateDesc(userId, SubscriptionStatus.ACTIVE)
+                .map(Entitlement::of)
+                .orElseGet(Entitlement::none);
+
+        synchronized (this) {
+            if (epoch == writeEpoch) {
+                entitlements.put(userId, loaded);
+            }
+        }
+        return loaded.isNone() ? null : loaded;
+    }
+
+    public boolean hasActive(Long userId, LocalDateTime now) {
+        Entitlement entitlement = get(userId);
+        return entitlement != null && entitlement.isActive(now);
+    }
+
+    public void invalidate(Long userId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                entitlements.remove(userId);
+            }
+            invalidations.increment();
+        });
+    }
+
+    public void invalidateAll(Collection<Long> userIds) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                writeEpoch++;
+                entitlements.keySet().removeAll(userIds);
+            }
+            invalidations.increment(userIds.size());
+        });
+    }
+
+    public synchronized int size() {
+        return entitlements.size();
+    }
+
+    public static final class Entitlement {
+        private final Long subscriptionId;
+        private final Long planId;
+        private final LocalDateTime expiryDate;
+        private final Integer chatLimit;
+        private final Integer usedChatSlots;
+        private final long loadedAt;
+
+        private Entitlement(Long subscriptionId, Long planId, LocalDateTime expiryDate, Integer chatLimit, Integer usedChatSlots, long loadedAt) {
+            this.subscriptionId = subscriptionId;
+            this.planId = planId;
+            this.expiryDate = expiryDate;
+            this.chatLimit = chatLimit;
+            this.usedChatSlots = usedChatSlots;
+            this.loadedAt = loadedAt;
+        }
+
+        private static Entitlement of(Subscription subscription) {
+            return new Entitlement(subscription.getId(), subscription.getPlan().getId(), subscription.getExpiryDate(),
+                    subscription.getChatLimit(), subscription.getUsedChatSlots(), System.currentTimeMillis());
+        }
+
+        // Cached for users without an active subscription; stamped per load so its age is real
+        private static Entitlement none() {
+            return new Entitlement(null, null, null, null, null, System.currentTimeMillis());
+        }
+
+        private boolean isNone() {
+            return subscriptionId == null;
+        }
+
+        public Long getSubscriptionId() {
+            return subscriptionId;
+        }
+
+        public Long getPlanId() {
+            return planId;
+        }
+
+        public LocalDateTime getExpiryDate() {
+            return expiryDate;
+        }
+
+        public Integer getChatLimit() {
+            return chatLimit;
+        }
+
+        public Integer getUsedChatSlots() {
+            return usedChatSlots;
+        }
+
+        public boolean isActive(LocalDateTime now) {
+            return !expiryDate.isBefore(now);
+        }
+    }
+}
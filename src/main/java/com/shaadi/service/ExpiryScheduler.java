@@ -0,0 +1,147 @@
+package com.shaadi.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.shaadi.repository.SubscriptionRepository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+// Expires each subscription at its expiry time instead of waiting for the next bulk run.
+// Every refresh loads the ACTIVE subscriptions expiring within the look-ahead window into a
+// DelayQueue; one thread takes them as they fall due and expires them one by one through
+// SubscriptionService. A subscription renewed after it was queued is skipped by the
+// conditional update when it fires. The cron job in SubscriptionService stays as a backstop
+// for anything this misses (scheduler disabled, more than max-queued due at once, restarts).
+@Component
+public class ExpiryScheduler {
+    private final SubscriptionRepository subscriptionRepo;
+    private final SubscriptionService subscriptionService;
+    private final boolean enabled;
+    private final long lookAheadMillis;
+    private final int maxQueued;
+
+    private final DelayQueue<Expiry> queue = new DelayQueue<>();
+    // Ids currently in the queue, so a refresh doesn't queue the same subscription twice
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final Timer lateness;
+
+    public ExpiryScheduler(SubscriptionRepository subscriptionRepo, SubscriptionService subscriptionService, MeterRegistry meterRegistry,
+                           @Value("${shaadi.subscriptions.expiry.scheduler.enabled:true}") boolean enabled,
+                           @Value("${shaadi.subscriptions.expiry.scheduler.look-ahead-ms:900000}") long lookAheadMillis,
+                           @Value("${shaadi.subscriptions.expiry.scheduler.max-queued:50000}") int maxQueued) {
+        this.subscriptionRepo = subscriptionRepo;
+        this.subscriptionService = subscriptionService;
+        this.enabled = enabled;
+        this.lookAheadMillis = lookAheadMillis;
+        this.maxQueued = maxQueued;
+
+        Gauge.builder("shaadi.subscriptions.expiry.queued", queue, DelayQueue::size).register(meterRegistry);
+        this.lateness = Timer.builder("shaadi.subscriptions.expiry.lateness")
+                .description("Time from a subscription's expiry date to it being expired")
+                .register(meterRegistry);
+
+        this.worker = new Thread(this::run, "subscription-expiry");
+        this.worker.setDaemon(true);
+        if (enabled) {
+            worker.start();
+        }
+    }
+
+    // The refresh interval must be shorter than the look-ahead window so no expiry falls between two loads
+    @Scheduled(fixedDelayString = "${shaadi.subscriptions.expiry.scheduler.refresh-ms:300000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime until = LocalDateTime.now().plus(lookAheadMillis, ChronoUnit.MILLIS);
+        List<Object[]> upcoming = subscriptionRepo.findExpiringBefore(until, PageRequest.of(0, maxQueued));
+        int added = 0;
+        for (Object[] row : upcoming) {
+            Long subscriptionId = (Long) row[0];
+            if (queued.add(subscriptionId)) {
+                queue.put(new Expiry(subscriptionId, (Long) row[1], toEpochMillis((LocalDateTime) row[2])));
+                added++;
+            }
+        }
+        if (added > 0) {
+            System.out.println("⏰ Queued " + added + " subscription expiries (" + queue.size() + " pending)");
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            Expiry expiry;
+            try {
+                expiry = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                if (subscriptionService.expireSubscription(expiry.subscriptionId, expiry.userId)) {
+                    lateness.record(Math.max(0, System.currentTimeMillis() - expiry.expiresAt), TimeUnit.MILLISECONDS);
+                }
+            } catch (Exception e) {
+                // Left ACTIVE; the next refresh or the cron job picks it up again
+                System.err.println("❌ Failed to expire subscription " + expiry.subscriptionId + ": " + e.getMessage());
+            } finally {
+                queued.remove(expiry.subscriptionId);
+            }
+        }
+    }
+
+    // Rounded up to the next millisecond so "expiryDate < now" already holds when the entry fires
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 1;
+    }
+
+    private static class Expiry implements Delayed {
+        private final Long subscriptionId;
+        private final Long userId;
+        private final long expiresAt;
+
+        private Expiry(Long subscriptionId, Long userId, long expiresAt) {
+            this.subscriptionId = subscriptionId;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Expiry) other).expiresAt);
+        }
+    }
+}
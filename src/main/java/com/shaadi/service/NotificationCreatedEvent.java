@@ -0,0 +1,25 @@
+package com.shaadi.service;
+
+import com.shaadi.dto.NotificationFrame;
+
+// Published by NotificationService.createNotification once the row is saved.
+// Delivery (WebSocket and FCM) listens for it and runs only after the transaction commits.
+// Carries plain values read inside the transaction, never entities: the listener runs on another
+// thread after the persistence context is closed, where a lazy association can't be loaded.
+public class NotificationCreatedEvent {
+    private final NotificationFrame frame;
+    private final String fcmToken;
+
+    public NotificationCreatedEvent(NotificationFrame frame, String fcmToken) {
+        this.frame = frame;
+        this.fcmToken = fcmToken;
+    }
+
+    public NotificationFrame getFrame() {
+        return frame;
+    }
+
+    public String getFcmToken() {
+        return fcmToken;
+    }
+}
@@ -0,0 +1,74 @@
+package com.shaadi.service;
+
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.shaadi.dto.NotificationFrame;
+import com.shaadi.entity.NotificationType;
+
+import java.util.Map;
+
+// Pushes a saved notification to the recipient over WebSocket and FCM.
+// Runs after the creating transaction commits, on the notification executor, so a rolled-back
+// request never notifies anyone and the request thread doesn't hold its connection during I/O.
+@Component
+public class NotificationDeliveryListener {
+    private final StompFrameSender frameSender;
+    private final PushDispatcher pushDispatcher;
+    private final PresenceRegistry presenceRegistry;
+
+    public NotificationDeliveryListener(StompFrameSender frameSender, PushDispatcher pushDispatcher, PresenceRegistry presenceRegistry) {
+        this.frameSender = frameSender;
+        this.pushDispatcher = pushDispatcher;
+        this.presenceRegistry = presenceRegistry;
+    }
+
+    @Async("notificationExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onNotificationCreated(NotificationCreatedEvent event) {
+        NotificationFrame frame = event.getFrame();
+        Long recipientId = frame.getRecipientId();
+
+        // Broadcast the notification via WebSocket to the recipient
+        frameSender.sendToUsers("/queue/notifications", frame, recipientId);
+
+        // Queue FCM Notification, unless the recipient has a live WebSocket session and already got it
+        if (presenceRegistry.isOnline(recipientId)) {
+            System.out.println("🟢 User " + recipientId + " is online, skipping FCM");
+            return;
+        }
+        try {
+            NotificationType type = frame.getType();
+            String fcmToken = event.getFcmToken();
+            System.out.println("🔔 Attempting to send FCM notification to user " + recipientId + " (type: " + type + ")");
+            if (fcmToken != null && !fcmToken.isEmpty()) {
+                System.out.println("📱 FCM Token found: " + fcmToken.substring(0, Math.min(20, fcmToken.length())) + "...");
+                String title = "Shaadi App";
+                // Customize title based on type if needed
+                if (type == NotificationType.REQUEST_RECEIVED) {
+                    title = "New Interest Received";
+                } else if (type == NotificationType.REQUEST_ACCEPTED) {
+                    title = "It's a Match!";
+                }
+
+                System.out.println("📤 Queueing FCM notification: title='" + title + "', message='" + frame.getMessage() + "'");
+                pushDispatcher.enqueue(
+                        fcmToken,
+                        title,
+                        frame.getMessage(),
+                        frame.getRelatedUser() != null
+                                ? Map.of("type", type.name(), "relatedUserId", String.valueOf(frame.getRelatedUser().getId()))
+                                : Map.of("type", type.name(), "digest", "true")
+                );
+                System.out.println("✅ FCM notification queued");
+            } else {
+                System.out.println("❌ No FCM token found for user " + recipientId);
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Failed to queue FCM notification: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.shaadi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.shaadi.entity.NotificationType;
+import com.shaadi.util.AfterCommit;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// Coalesces bursts of notifications for one recipient.
+// Per (recipient, type) a window opens with the first notification. The first "threshold"
+// notifications in it are delivered as usual; later ones are only remembered here, and
+// NotificationService.flushDigests turns them into one "N new ..." notification when the
+// window closes. Pending digests are in memory only and are lost on restart. A notification
+// discarded before its window closes is left out of the digest; once the digest notification
+// exists it is not updated or retracted.
+@Component
+public class NotificationDigester {
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int threshold;
+    private final Set<NotificationType> types;
+
+    // All access is guarded by "this"
+    private final Map<Key, Window> windows = new HashMap<>();
+
+    public NotificationDigester(@Value("${shaadi.notifications.digest.enabled:true}") boolean enabled,
+                                @Value("${shaadi.notifications.digest.window-ms:60000}") long windowMillis,
+                                @Value("${shaadi.notifications.digest.threshold:3}") int threshold,
+                                @Value("${shaadi.notifications.digest.types:REQUEST_RECEIVED}") Set<NotificationType> types) {
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.threshold = threshold;
+        this.types = types.isEmpty() ? EnumSet.noneOf(NotificationType.class) : EnumSet.copyOf(types);
+    }
+
+    // True when the notification was taken into a digest and must not be delivered on its own.
+    // It joins the digest only once the surrounding transaction commits.
+    public boolean tryDigest(Long recipientId, NotificationType type, Long relatedUserId) {
+        if (!enabled || !types.contains(type)) {
+            return false;
+        }
+        Key key = new Key(recipientId, type);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Window window = windows.get(key);
+            if (window == null || window.closesAt <= now) {
+                // An expired window that still holds pending notifications is left for the flush
+                if (window != null && !window.pending.isEmpty()) {
+                    return bufferAfterCommit(key, window, relatedUserId);
+                }
+                window = new Window(now + windowMillis);
+                windows.put(key, window);
+            }
+            window.seen++;
+            if (window.seen <= threshold) {
+                return false;
+            }
+            return bufferAfterCommit(key, window, relatedUserId);
+        }
+    }
+
+    // Drops a pending notification about the given user, e.g. when their request is cancelled
+    public void discard(Long recipientId, NotificationType type, Long relatedUserId) {
+        Key key = new Key(recipientId, type);
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                Window window = windows.get(key);
+                if (window != null) {
+                    window.pending.remove(relatedUserId);
+                }
+            }
+        });
+    }
+
+    // Removes closed windows and returns those that collected notifications
+    public synchronized List<Digest> drainClosed() {
+        long now = System.currentTimeMillis();
+        List<Digest> digests = new ArrayList<>();
+        Iterator<Map.Entry<Key, Window>> it = windows.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Window> entry = it.next();
+            Window window = entry.getValue();
+            if (window.closesAt > now) {
+                continue;
+            }
+            it.remove();
+            if (!window.pending.isEmpty()) {
+                digests.add(new Digest(entry.getKey().recipientId, entry.getKey().type, new ArrayList<>(window.pending)));
+            }
+        }
+        return digests;
+    }
+
+    private boolean bufferAfterCommit(Key key, Window window, Long relatedUserId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                // The window may have been drained in the meantime; start a fresh one for the leftover
+                Window current = windows.computeIfAbsent(key, k -> new Window(System.currentTimeMillis() + windowMillis));
+                current.pending.add(relatedUserId);
+            }
+        });
+        return true;
+    }
+
+    public static class Digest {
+        private final Long recipientId;
+        private final NotificationType type;
+        private final List<Long> relatedUserIds;
+
+        private Digest(Long recipientId, NotificationType type, List<Long> relatedUserIds) {
+            this.recipientId = recipientId;
+            this.type = type;
+            this.relatedUserIds = relatedUserIds;
+        }
+
+        public Long getRecipientId() {
+            return recipientId;
+        }
+
+        public NotificationType getType() {
+            return type;
+        }
+
+        public List<Long> getRelatedUserIds() {
+            return relatedUserIds;
+        }
+    }
+
+    private static class Window {
+        private final long closesAt;
+        private int seen;
+        private final LinkedHashSet<Long> pending = new LinkedHashSet<>();
+
+        private Window(long closesAt) {
+            this.closesAt = closesAt;
+        }
+    }
+
+    private static final class Key {
+        private final Long recipientId;
+        private final NotificationType type;
+
+        private Key(Long recipientId, NotificationType type) {
+            this.recipientId = recipientId;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return recipientId.equals(key.recipientId) && type == key.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(recipientId, type);
+        }
+    }
+}
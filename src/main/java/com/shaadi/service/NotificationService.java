@@ -1,30 +1,54 @@
 package com.shaadi.service;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.shaadi.dto.NotificationFrame;
+import com.shaadi.dto.UserCardDto;
 import com.shaadi.entity.Notification;
+import com.shaadi.entity.NotificationCounter;
 import com.shaadi.entity.NotificationType;
 import com.shaadi.entity.User;
+import com.shaadi.repository.NotificationCounterRepository;
 import com.shaadi.repository.NotificationRepository;
 import com.shaadi.repository.UserRepository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @Transactional
 public class NotificationService {
+    public static final int MAX_INBOX_PAGE_SIZE = 100;
+
     private final NotificationRepository notificationRepo;
     private final UserRepository userRepo;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final FCMService fcmService;
+    private final NotificationCounterRepository counterRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final NotificationDigester digester;
+
+    @Value("${shaadi.notifications.retention.days:90}")
+    private int retentionDays;
 
-    public NotificationService(NotificationRepository notificationRepo, UserRepository userRepo, SimpMessagingTemplate messagingTemplate, FCMService fcmService) {
+    @Value("${shaadi.notifications.retention.batch-size:1000}")
+    private int retentionBatchSize;
+
+    public NotificationService(NotificationRepository notificationRepo, UserRepository userRepo, NotificationCounterRepository counterRepo, ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager, NotificationDigester digester) {
         this.notificationRepo = notificationRepo;
+        this.counterRepo = counterRepo;
         this.userRepo = userRepo;
-        this.messagingTemplate = messagingTemplate;
-        this.fcmService = fcmService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.digester = digester;
     }
 
     public Notification createNotification(NotificationType type, String message, User recipient, User relatedUser) {
@@ -35,49 +59,71 @@ public class NotificationService {
         notification.setRelatedUser(relatedUser);
         Notification savedNotification = notificationRepo.save(notification);
 
-        // Broadcast the notification via WebSocket to the recipient
-        messagingTemplate.convertAndSendToUser(
-            String.valueOf(savedNotification.getRecipient().getId()),
-            "/queue/notifications",
-            savedNotification
-        );
-
-        // Send FCM Notification
-        try {
-            System.out.println("🔔 Attempting to send FCM notification to user " + recipient.getId() + " (type: " + type + ")");
-            if (recipient.getFcmToken() != null && !recipient.getFcmToken().isEmpty()) {
-                System.out.println("📱 FCM Token found: " + recipient.getFcmToken().substring(0, Math.min(20, recipient.getFcmToken().length())) + "...");
-                String title = "Shaadi App";
-                // Customize title based on type if needed
-                if (type == NotificationType.REQUEST_RECEIVED) {
-                    title = "New Interest Received";
-                } else if (type == NotificationType.REQUEST_ACCEPTED) {
-                    title = "It's a Match!";
-                }
-
-                System.out.println("📤 Sending FCM notification: title='" + title + "', message='" + message + "'");
-                fcmService.sendNotification(
-                        recipient.getFcmToken(),
-                        title,
-                        message,
-                        java.util.Map.of("type", type.name(), "relatedUserId", String.valueOf(relatedUser.getId()))
-                );
-                System.out.println("✅ FCM notification sent successfully");
-            } else {
-                System.out.println("❌ No FCM token found for user " + recipient.getId());
+        // Count it as unread; the first notification for a user seeds the counter (including this one)
+        counterRepo.increment(recipient.getId());
+
+        // WebSocket and FCM delivery happen after commit (NotificationDeliveryListener); the frame
+        // and token are read here, while lazy recipient/relatedUser proxies can still be loaded
+        NotificationFrame frame = new NotificationFrame(
+                savedNotification.getId(),
+                savedNotification.getType(),
+                savedNotification.getMessage(),
+                recipient.getId(),
+                relatedUser != null ? new UserCardDto(relatedUser.getId(), relatedUser.getName(), relatedUser.getPhotoUrl()) : null,
+                savedNotification.getIsRead(),
+                savedNotification.getCreatedAt());
+        eventPublisher.publishEvent(new NotificationCreatedEvent(frame, recipient.getFcmToken()));
+
+        return savedNotification;
+    }
+
+    // Like createNotification, but during a burst for the same recipient and type the notification
+    // is folded into a digest instead (see NotificationDigester). Returns null when digested.
+    public Notification createOrDigestNotification(NotificationType type, String message, User recipient, User relatedUser) {
+        if (digester.tryDigest(recipient.getId(), type, relatedUser.getId())) {
+            return null;
+        }
+        return createNotification(type, message, recipient, relatedUser);
+    }
+
+    // Turns each closed digest window into a single "N new ..." notification
+    @Scheduled(fixedDelayString = "${shaadi.notifications.digest.flush-ms:5000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void flushDigests() {
+        for (NotificationDigester.Digest digest : digester.drainClosed()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> userRepo.findById(digest.getRecipientId()).ifPresent(recipient ->
+                        createNotification(digest.getType(), digestMessage(digest.getType(), digest.getRelatedUserIds().size()), recipient, null)));
+            } catch (Exception e) {
+                System.err.println("❌ Failed to create digest notification for user " + digest.getRecipientId() + ": " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("❌ Failed to send FCM notification: " + e.getMessage());
-            e.printStackTrace();
         }
+    }
 
-        return savedNotification;
+    private static String digestMessage(NotificationType type, int count) {
+        switch (type) {
+            case REQUEST_RECEIVED:
+                return count == 1 ? "1 new interest" : count + " new interests";
+            case REQUEST_ACCEPTED:
+                return count == 1 ? "1 person accepted your request" : count + " people accepted your request";
+            default:
+                return count == 1 ? "1 new notification" : count + " new notifications";
+        }
     }
 
-    public List<Notification> getNotificationsForUser(Long userId) {
-        User user = userRepo.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        return notificationRepo.findByRecipientOrderByCreatedAtDesc(user);
+    // One inbox page, newest first. "before" is the id of the last notification the client has.
+    public List<Notification> getNotificationsForUser(Long userId, Long beforeId, int limit) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_INBOX_PAGE_SIZE)));
+        if (beforeId == null) {
+            if (!userRepo.existsById(userId)) {
+                throw new IllegalArgumentException("User not found");
+            }
+            return notificationRepo.findInbox(userId, page);
+        }
+        Notification cursor = notificationRepo.findById(beforeId)
+                .filter(n -> n.getRecipient().getId().equals(userId))
+                .orElseThrow(() -> new IllegalArgumentException("Invalid cursor"));
+        return notificationRepo.findInboxBefore(userId, cursor.getCreatedAt(), cursor.getId(), page);
     }
 
     public List<Notification> getUnreadNotificationsForUser(Long userId) {
@@ -87,33 +133,63 @@ public class NotificationService {
     }
 
     public void markNotificationAsRead(long notificationId, int userId) {
-        notificationRepo.markAsRead(notificationId, userId);
+        if (notificationRepo.markAsRead(notificationId, userId) > 0) {
+            counterRepo.decrement((long) userId, 1);
+        }
     }
 
     public void markAllNotificationsAsRead(int userId) {
         notificationRepo.markAllAsRead(userId);
+        counterRepo.reset((long) userId);
     }
 
+    // Badge count: a primary key read once the user's counter exists
     public long getUnreadNotificationCount(Long userId) {
-        User user = userRepo.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        return notificationRepo.countByRecipientAndIsRead(user, false);
+        Optional<NotificationCounter> counter = counterRepo.findById(userId);
+        if (counter.isPresent()) {
+            return counter.get().getUnreadCount();
+        }
+        if (!userRepo.existsById(userId)) {
+            throw new IllegalArgumentException("User not found");
+        }
+        counterRepo.seed(userId);
+        return counterRepo.findById(userId).map(NotificationCounter::getUnreadCount).orElse(0);
     }
 
     public void deleteNotification(long notificationId) {
-        notificationRepo.deleteById(notificationId);
+        notificationRepo.findById(notificationId).ifPresent(this::delete);
+    }
+
+    private void delete(Notification notification) {
+        notificationRepo.delete(notification);
+        if (!Boolean.TRUE.equals(notification.getIsRead())) {
+            counterRepo.decrement(notification.getRecipient().getId(), 1);
+        }
     }
 
+    // A request still pending in a digest window is dropped from it. Digest notifications that were
+    // already created are not retracted: they carry no related user, only a count, and stay as sent.
     public void deleteRequestReceivedNotification(User recipient, User sender) {
-        // Find and delete the REQUEST_RECEIVED notification for this specific request
-        List<Notification> notifications = notificationRepo.findByRecipientOrderByCreatedAtDesc(recipient);
-        for (Notification notification : notifications) {
-            if (notification.getType() == NotificationType.REQUEST_RECEIVED &&
-                notification.getRelatedUser() != null &&
-                notification.getRelatedUser().getId() == sender.getId()) {
-                notificationRepo.delete(notification);
-                break; // Delete only the first matching notification
-            }
+        // Delete the REQUEST_RECEIVED notification(s) for this specific request
+        int unread = notificationRepo.deleteByRecipientAndTypeAndRelatedUser(recipient.getId(), NotificationType.REQUEST_RECEIVED, sender.getId(), false);
+        notificationRepo.deleteByRecipientAndTypeAndRelatedUser(recipient.getId(), NotificationType.REQUEST_RECEIVED, sender.getId(), true);
+        if (unread > 0) {
+            counterRepo.decrement(recipient.getId(), unread);
         }
+        digester.discard(recipient.getId(), NotificationType.REQUEST_RECEIVED, sender.getId());
+    }
+
+    // Prunes read notifications older than the retention period, one short transaction per chunk
+    @Scheduled(cron = "${shaadi.notifications.retention.cron:0 30 3 * * ?}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void pruneReadNotifications() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> notificationRepo.deleteReadBefore(cutoff, retentionBatchSize));
+            total += deleted;
+        } while (deleted == retentionBatchSize);
+        System.out.println("🧹 Pruned " + total + " read notifications older than " + retentionDays + " days");
     }
 }
@@ -0,0 +1,107 @@
+package com.shaadi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.shaadi.entity.Plan;
+import com.shaadi.repository.PlanRepository;
+import com.shaadi.util.AfterCommit;
+
+import java.util.List;
+
+// Published plans held in memory, together with their JSON and an ETag over it.
+// Read on every app launch and paywall view, but only changed by an admin, so GET /api/plans
+// is answered from here: a 304 when the client's If-None-Match still matches, otherwise the
+// precomputed bytes. Reloaded after every plan save/delete through PlanService, and
+// periodically in case plans were changed on another instance or directly in the DB.
+@Component
+public class PlanCatalog {
+    private final PlanRepository planRepository;
+    private final ObjectMapper objectMapper;
+
+    // Replaced as a whole on reload; readers never see a half-built catalog
+    private volatile Snapshot snapshot;
+
+    public PlanCatalog(PlanRepository planRepository, ObjectMapper objectMapper) {
+        this.planRepository = planRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    // Reloads once the surrounding transaction commits (immediately when there is none)
+    public void invalidate() {
+        AfterCommit.run(this::reload);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Snapshot loaded = reload();
+        System.out.println("📋 Plan catalog loaded: " + loaded.getPlans().size() + " published plans");
+    }
+
+    @Scheduled(fixedDelayString = "${shaadi.plans.catalog.refresh-ms:300000}", initialDelayString = "${shaadi.plans.catalog.refresh-ms:300000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // Keep serving the previous catalog
+            System.err.println("❌ Failed to refresh plan catalog: " + e.getMessage());
+        }
+    }
+
+    private synchronized Snapshot reload() {
+        List<Plan> plans = List.copyOf(planRepository.findByIsPublishedTrue());
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(plans);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize plans", e);
+        }
+        Snapshot current = snapshot;
+        String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+        if (current != null && current.etag.equals(etag)) {
+            return current; // unchanged; keep the old instance
+        }
+        snapshot = new Snapshot(plans, json, etag);
+        return snapshot;
+    }
+
+    // Plans are detached entities shared by all readers: read them, never modify them
+    public static final class Snapshot {
+        private final List<Plan> plans;
+        private final byte[] json;
+        private final String etag;
+
+        private Snapshot(List<Plan> plans, byte[] json, String etag) {
+            this.plans = plans;
+            this.json = json;
+            this.etag = etag;
+        }
+
+        public List<Plan> getPlans() {
+            return plans;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        // True when an If-None-Match header (possibly a list, or weak tags) names this version
+        public boolean matches(String ifNoneMatch) {
+            return ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"));
+        }
+    }
+}
@@ -10,13 +10,20 @@ import java.util.Optional;
 @Service
 public class PlanService {
     private final PlanRepository planRepository;
+    private final PlanCatalog planCatalog;
 
-    public PlanService(PlanRepository planRepository) {
+    public PlanService(PlanRepository planRepository, PlanCatalog planCatalog) {
         this.planRepository = planRepository;
+        this.planCatalog = planCatalog;
     }
 
+    // Served from the in-memory catalog; the plans are shared, don't modify them
     public List<Plan> getAllPublishedPlans() {
-        return planRepository.findByIsPublishedTrue();
+        return planCatalog.get().getPlans();
+    }
+
+    public PlanCatalog.Snapshot getPublishedCatalog() {
+        return planCatalog.get();
     }
 
     public List<Plan> getAllPlans() {
@@ -28,10 +35,13 @@ public class PlanService {
     }
 
     public Plan savePlan(Plan plan) {
-        return planRepository.save(plan);
+        Plan saved = planRepository.save(plan);
+        planCatalog.invalidate();
+        return saved;
     }
 
     public void deletePlan(Long id) {
         planRepository.deleteById(id);
+        planCatalog.invalidate();
     }
 }
@@ -0,0 +1,96 @@
+package com.shaadi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Which users have a live STOMP session on this instance.
+// Fed by connect/disconnect events; every inbound frame (heartbeats included) refreshes the
+// user's last-seen time, so a session that went quiet without disconnecting stops counting.
+// Registered as a client inbound channel interceptor in WebSocketConfig.
+@Component
+public class PresenceRegistry implements ChannelInterceptor {
+    private final long staleAfterMillis;
+
+    private final ConcurrentHashMap<Long, Presence> presence = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> sessionUsers = new ConcurrentHashMap<>();
+
+    public PresenceRegistry(@Value("${shaadi.presence.stale-after-ms:30000}") long staleAfterMillis) {
+        this.staleAfterMillis = staleAfterMillis;
+    }
+
+    public boolean isOnline(Long userId) {
+        Presence p = presence.get(userId);
+        return p != null && p.sessions > 0 && System.currentTimeMillis() - p.lastSeen < staleAfterMillis;
+    }
+
+    public int onlineCount() {
+        return presence.size();
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Long userId = userId(event.getUser());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (userId == null || sessionId == null) {
+            return;
+        }
+        sessionUsers.put(sessionId, userId);
+        presence.compute(userId, (id, p) -> {
+            Presence updated = p != null ? p : new Presence();
+            updated.sessions++;
+            updated.lastSeen = System.currentTimeMillis();
+            return updated;
+        });
+    }
+
+    @EventListener
+    public void onDisconnected(SessionDisconnectEvent event) {
+        Long userId = sessionUsers.remove(event.getSessionId());
+        if (userId == null) {
+            return;
+        }
+        // Returning null removes the user once their last session is gone
+        presence.computeIfPresent(userId, (id, p) -> --p.sessions > 0 ? p : null);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            Long userId = sessionUsers.get(sessionId);
+            if (userId != null) {
+                Presence p = presence.get(userId);
+                if (p != null) {
+                    p.lastSeen = System.currentTimeMillis();
+                }
+            }
+        }
+        return message;
+    }
+
+    private static Long userId(Principal user) {
+        if (user == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(user.getName());
+        } catch (NumberFormatException e) {
+            return null; // anonymous session
+        }
+    }
+
+    private static class Presence {
+        private volatile int sessions;     // changed only inside compute()
+        private volatile long lastSeen;
+    }
+}
@@ -0,0 +1,385 @@
+package com.shaadi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import com.shaadi.dto.ProfileFacetsDto;
+import com.shaadi.dto.ProfileSearchCriteria;
+import com.shaadi.entity.User;
+import com.shaadi.repository.UserRepository;
+import com.shaadi.util.AfterCommit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// In-process search index over the low-cardinality profile attributes.
+// One bitmap (keyed by user id) per facet value plus sorted primitive arrays for the
+// numeric ranges, so a search is a handful of bitmap intersections and one primary-key
+// fetch for the requested page. Built at startup and kept current by UserService; the range
+// columns are updated in place on each write, so a search never has to re-sort them.
+// Only active with shaadi.search.engine=index; otherwise nothing is loaded and writes are ignored.
+@Component
+public class ProfileIndex {
+    private static final int LOAD_CHUNK_SIZE = 5000;
+
+    private static final ToLongFunction<ProfileFacetsDto> AGE = doc -> doc.getAge() == null ? Long.MIN_VALUE : doc.getAge();
+    private static final ToLongFunction<ProfileFacetsDto> HEIGHT = doc -> doc.getHeight() == null ? Long.MIN_VALUE : doc.getHeight();
+    private static final ToLongFunction<ProfileFacetsDto> INCOME = doc -> doc.getAnnualIncome() == null ? Long.MIN_VALUE : doc.getAnnualIncome();
+
+    enum Facet {
+        GENDER(ProfileFacetsDto::getGender),
+        RELIGION(ProfileFacetsDto::getReligion),
+        CASTE(ProfileFacetsDto::getCaste),
+        MOTHER_TONGUE(ProfileFacetsDto::getMotherTongue),
+        MARITAL_STATUS(ProfileFacetsDto::getMaritalStatus),
+        DIET(ProfileFacetsDto::getDiet),
+        MANGLIK(doc -> doc.getManglik() == null ? null : doc.getManglik().toString()),
+        STATE(ProfileFacetsDto::getState);
+
+        private final Function<ProfileFacetsDto, String> extractor;
+
+        Facet(Function<ProfileFacetsDto, String> extractor) {
+            this.extractor = extractor;
+        }
+
+        String key(ProfileFacetsDto doc) {
+            return User.searchKey(extractor.apply(doc));
+        }
+    }
+
+    private final UserRepository userRepo;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // All fields below are guarded by lock
+    private Map<Facet, Map<String, BitSet>> postings = newPostings();
+    private BitSet allUsers = new BitSet();
+    private Map<Integer, ProfileFacetsDto> docs = new HashMap<>();
+    private RangeColumn age = new RangeColumn(AGE);
+    private RangeColumn height = new RangeColumn(HEIGHT);
+    private RangeColumn income = new RangeColumn(INCOME);
+    private boolean ready;
+    private List<Runnable> pendingDuringBuild = new ArrayList<>();
+
+    public ProfileIndex(UserRepository userRepo, @Value("${shaadi.search.engine:db}") String searchEngine) {
+        this.userRepo = userRepo;
+        this.enabled = "index".equals(searchEngine);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+        System.out.println("🔎 Building profile search index...");
+        long start = System.currentTimeMillis();
+
+        Map<Facet, Map<String, BitSet>> newPostings = newPostings();
+        BitSet newAllUsers = new BitSet();
+        Map<Integer, ProfileFacetsDto> newDocs = new HashMap<>();
+
+        long afterId = 0L;
+        List<ProfileFacetsDto> chunk;
+        do {
+            chunk = userRepo.findProfileFacetsAfter(afterId, PageRequest.of(0, LOAD_CHUNK_SIZE));
+            for (ProfileFacetsDto doc : chunk) {
+                addDoc(doc, newPostings, newAllUsers, newDocs);
+                afterId = doc.getId();
+            }
+        } while (chunk.size() == LOAD_CHUNK_SIZE);
+        // Sorted here, outside the lock; later writes keep them sorted
+        RangeColumn newAge = RangeColumn.build(AGE, newDocs.values());
+        RangeColumn newHeight = RangeColumn.build(HEIGHT, newDocs.values());
+        RangeColumn newIncome = RangeColumn.build(INCOME, newDocs.values());
+
+        lock.writeLock().lock();
+        try {
+            postings = newPostings;
+            allUsers = newAllUsers;
+            docs = newDocs;
+            age = newAge;
+            height = newHeight;
+            income = newIncome;
+            // Replay writes that committed while the snapshot was loading
+            for (Runnable pending : pendingDuringBuild) {
+                pending.run();
+            }
+            pendingDuringBuild = new ArrayList<>();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("✅ Profile search index built with " + newDocs.size() + " users in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Name, city/district and free-text location are not indexed; those searches go to the database
+    public boolean supports(ProfileSearchCriteria criteria) {
+        return isBlank(criteria.getName()) && isBlank(criteria.getCityTown())
+                && isBlank(criteria.getDistrict()) && isBlank(criteria.getLocation());
+    }
+
+    public void index(User user) {
+        if (!enabled) {
+            return;
+        }
+        ProfileFacetsDto doc = new ProfileFacetsDto(user.getId(), user.getGender(), user.getReligion(), user.getCaste(),
+                user.getMotherTongue(), user.getMaritalStatus(), user.getDiet(), user.getManglik(), user.getState(),
+                user.getAge(), user.getHeight(), user.getAnnualIncome());
+        AfterCommit.run(() -> write(() -> {
+            removeDoc(Math.toIntExact(doc.getId()));
+            addDoc(doc, postings, allUsers, docs);
+            age.insert(doc);
+            height.insert(doc);
+            income.insert(doc);
+        }));
+    }
+
+    public void remove(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> write(() -> removeDoc(Math.toIntExact(userId))));
+    }
+
+    // Matching user ids (ascending) after facet and range filters, minus the excluded ids
+    public BitSet search(ProfileSearchCriteria criteria, long[] excludedIds) {
+        lock.readLock().lock();
+        try {
+            BitSet result = (BitSet) allUsers.clone();
+            and(result, Facet.GENDER, criteria.getGender());
+            and(result, Facet.RELIGION, criteria.getReligion());
+            and(result, Facet.CASTE, criteria.getCaste());
+            and(result, Facet.MOTHER_TONGUE, criteria.getMotherTongue());
+            and(result, Facet.MARITAL_STATUS, criteria.getMaritalStatus());
+            and(result, Facet.DIET, criteria.getDiet());
+            and(result, Facet.MANGLIK, criteria.getManglik() == null ? null : criteria.getManglik().toString());
+            and(result, Facet.STATE, criteria.getState());
+            age.and(result, criteria.getMinAge(), criteria.getMaxAge());
+            height.and(result, criteria.getMinHeight(), criteria.getMaxHeight());
+            income.and(result, criteria.getMinIncome(), criteria.getMaxIncome());
+            for (long id : excludedIds) {
+                result.clear(Math.toIntExact(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void and(BitSet result, Facet facet, String value) {
+        String key = User.searchKey(value);
+        if (key == null) {
+            return;
+        }
+        BitSet matching = postings.get(facet).get(key);
+        if (matching == null) {
+            result.clear();
+        } else {
+            result.and(matching);
+        }
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                pendingDuringBuild.add(change);
+                return;
+            }
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void addDoc(ProfileFacetsDto doc, Map<Facet, Map<String, BitSet>> postings, BitSet allUsers, Map<Integer, ProfileFacetsDto> docs) {
+        int id = Math.toIntExact(doc.getId());
+        for (Facet facet : Facet.values()) {
+            String key = facet.key(doc);
+            if (key != null) {
+                postings.get(facet).computeIfAbsent(key, k -> new BitSet()).set(id);
+            }
+        }
+        allUsers.set(id);
+        docs.put(id, doc);
+    }
+
+    private void removeDoc(int id) {
+        ProfileFacetsDto old = docs.remove(id);
+        if (old == null) {
+            return;
+        }
+        age.remove(old);
+        height.remove(old);
+        income.remove(old);
+        for (Facet facet : Facet.values()) {
+            String key = facet.key(old);
+            if (key != null) {
+                BitSet bits = postings.get(facet).get(key);
+                bits.clear(id);
+                if (bits.isEmpty()) {
+                    postings.get(facet).remove(key);
+                }
+            }
+        }
+        allUsers.clear(id);
+    }
+
+    private static Map<Facet, Map<String, BitSet>> newPostings() {
+        Map<Facet, Map<String, BitSet>> map = new EnumMap<>(Facet.class);
+        for (Facet facet : Facet.values()) {
+            map.put(facet, new HashMap<>());
+        }
+        return map;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Values sorted by (value, user id) with the owning user id alongside. Built once from the
+    // startup snapshot, then kept sorted by binary-search insert/remove on every write (caller
+    // holds the write lock); a write shifts part of two primitive arrays instead of re-sorting.
+    private static class RangeColumn {
+        private final ToLongFunction<ProfileFacetsDto> extractor; // Long.MIN_VALUE when unset
+        private long[] values;
+        private int[] ids;
+        private int size;
+
+        private RangeColumn(ToLongFunction<ProfileFacetsDto> extractor) {
+            this(extractor, new long[16], new int[16], 0);
+        }
+
+        private RangeColumn(ToLongFunction<ProfileFacetsDto> extractor, long[] values, int[] ids, int size) {
+            this.extractor = extractor;
+            this.values = values;
+            this.ids = ids;
+            this.size = size;
+        }
+
+        // Replaces each value by its rank among the distinct values, packs (rank, id) into one
+        // long and sorts that, so the whole build is primitive sorts with no boxing
+        private static RangeColumn build(ToLongFunction<ProfileFacetsDto> extractor, Collection<ProfileFacetsDto> docs) {
+            long[] rawValues = new long[docs.size()];
+            int[] rawIds = new int[docs.size()];
+            int n = 0;
+            for (ProfileFacetsDto doc : docs) {
+                long value = extractor.applyAsLong(doc);
+                if (value != Long.MIN_VALUE) {
+                    rawValues[n] = value;
+                    rawIds[n] = Math.toIntExact(doc.getId());
+                    n++;
+                }
+            }
+
+            long[] distinct = Arrays.copyOf(rawValues, n);
+            Arrays.sort(distinct);
+            int distinctCount = 0;
+            for (int i = 0; i < n; i++) {
+                if (distinctCount == 0 || distinct[distinctCount - 1] != distinct[i]) {
+                    distinct[distinctCount++] = distinct[i];
+                }
+            }
+
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                long rank = Arrays.binarySearch(distinct, 0, distinctCount, rawValues[i]);
+                packed[i] = (rank << 32) | rawIds[i];
+            }
+            Arrays.sort(packed);
+
+            int capacity = Math.max(16, n + n / 8);
+            long[] values = new long[capacity];
+            int[] ids = new int[capacity];
+            for (int i = 0; i < n; i++) {
+                values[i] = distinct[(int) (packed[i] >>> 32)];
+                ids[i] = (int) packed[i];
+            }
+            return new RangeColumn(extractor, values, ids, n);
+        }
+
+        private void insert(ProfileFacetsDto doc) {
+            long value = extractor.applyAsLong(doc);
+            if (value == Long.MIN_VALUE) {
+                return;
+            }
+            int id = Math.toIntExact(doc.getId());
+            if (size == values.length) {
+                int capacity = size + (size >> 1);
+                values = Arrays.copyOf(values, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            int pos = position(value, id);
+            System.arraycopy(values, pos, values, pos + 1, size - pos);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            values[pos] = value;
+            ids[pos] = id;
+            size++;
+        }
+
+        // doc is the version that was indexed, so its value locates the entry
+        private void remove(ProfileFacetsDto doc) {
+            long value = extractor.applyAsLong(doc);
+            if (value == Long.MIN_VALUE) {
+                return;
+            }
+            int id = Math.toIntExact(doc.getId());
+            int pos = position(value, id);
+            if (pos < size && values[pos] == value && ids[pos] == id) {
+                System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        // Caller holds the read lock
+        private void and(BitSet result, Number min, Number max) {
+            if (min == null && max == null) {
+                return;
+            }
+            long lo = min == null ? Long.MIN_VALUE + 1 : min.longValue();
+            long hi = max == null ? Long.MAX_VALUE : max.longValue();
+            BitSet inRange = new BitSet();
+            for (int i = position(lo, Integer.MIN_VALUE); i < size && values[i] <= hi; i++) {
+                inRange.set(ids[i]);
+            }
+            result.and(inRange);
+        }
+
+        // First index whose (value, id) is not less than the given pair
+        private int position(long value, int id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value || (values[mid] == value && ids[mid] < id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.shaadi.service;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.shaadi.util.AfterCommit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Delivers FCM pushes off the request thread.
+// Pushes are queued once the surrounding transaction commits, then drained by a small
+// worker pool in sendEach batches of up to 500. Transient FCM errors are retried with
+// exponential backoff; when the queue is full new pushes are dropped and counted.
+@Component
+public class PushDispatcher {
+    // FCM accepts at most 500 messages per sendEach call
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final Set<MessagingErrorCode> RETRYABLE = Set.of(
+            MessagingErrorCode.UNAVAILABLE, MessagingErrorCode.INTERNAL, MessagingErrorCode.QUOTA_EXCEEDED);
+
+    private final FCMService fcmService;
+    private final BlockingQueue<Push> queue;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retryScheduler;
+    private volatile boolean running = true;
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter retried;
+    private final Counter dropped;
+    private final DistributionSummary batchSizes;
+    private final Timer deliveryLatency;
+
+    public PushDispatcher(FCMService fcmService, MeterRegistry meterRegistry,
+                          @Value("${shaadi.push.queue-capacity:10000}") int queueCapacity,
+                          @Value("${shaadi.push.workers:2}") int workerCount,
+                          @Value("${shaadi.push.batch-size:500}") int batchSize,
+                          @Value("${shaadi.push.max-attempts:4}") int maxAttempts,
+                          @Value("${shaadi.push.initial-backoff-ms:500}") long initialBackoffMillis) {
+        this.fcmService = fcmService;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, Math.min(batchSize, MAX_BATCH_SIZE));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+
+        Gauge.builder("shaadi.push.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.sent = meterRegistry.counter("shaadi.push.sent");
+        this.failed = meterRegistry.counter("shaadi.push.failed");
+        this.retried = meterRegistry.counter("shaadi.push.retried");
+        this.dropped = meterRegistry.counter("shaadi.push.dropped");
+        this.batchSizes = DistributionSummary.builder("shaadi.push.batch.size").register(meterRegistry);
+        this.deliveryLatency = Timer.builder("shaadi.push.delivery.latency")
+                .description("Time from enqueue to an accepted FCM send")
+                .register(meterRegistry);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "push-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "push-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drain);
+        }
+    }
+
+    // Queues a push for after the current transaction commits (immediately when there is none)
+    public void enqueue(String token, String title, String body, Map<String, String> data) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        Push push = new Push(fcmService.buildMessage(token, title, body, data));
+        AfterCommit.run(() -> offer(push));
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        retryScheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void offer(Push push) {
+        if (!queue.offer(push)) {
+            dropped.increment();
+            System.err.println("⚠️ Push queue full, dropping FCM message");
+        }
+    }
+
+    private void drain() {
+        List<Push> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Never let one bad batch kill the worker
+                System.err.println("❌ Push worker error: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Push> batch) {
+        batchSizes.record(batch.size());
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Push push : batch) {
+            messages.add(push.message);
+        }
+
+        BatchResponse response;
+        try {
+            response = fcmService.sendEach(messages);
+        } catch (FirebaseMessagingException e) {
+            // The whole call failed, e.g. FCM unreachable
+            boolean retryable = e.getMessagingErrorCode() == null || RETRYABLE.contains(e.getMessagingErrorCode());
+            for (Push push : batch) {
+                handleFailure(push, retryable, e.getMessage());
+            }
+            return;
+        } catch (IllegalStateException e) {
+            // FirebaseApp was never initialized; retrying won't help
+            failed.increment(batch.size());
+            System.err.println("❌ FCM not available, dropping " + batch.size() + " pushes: " + e.getMessage());
+            return;
+        }
+
+        List<SendResponse> responses = response.getResponses();
+        for (int i = 0; i < responses.size(); i++) {
+            SendResponse result = responses.get(i);
+            Push push = batch.get(i);
+            if (result.isSuccessful()) {
+                sent.increment();
+                deliveryLatency.record(Duration.ofNanos(System.nanoTime() - push.enqueuedAt));
+            } else {
+                FirebaseMessagingException error = result.getException();
+                boolean retryable = error != null && RETRYABLE.contains(error.getMessagingErrorCode());
+                handleFailure(push, retryable, error != null ? error.getMessage() : "unknown error");
+            }
+        }
+    }
+
+    private void handleFailure(Push push, boolean retryable, String reason) {
+        if (!retryable || push.attempts + 1 >= maxAttempts) {
+            failed.increment();
+            System.err.println("❌ FCM push failed after " + (push.attempts + 1) + " attempt(s): " + reason);
+            return;
+        }
+        push.attempts++;
+        retried.increment();
+        long delay = initialBackoffMillis << (push.attempts - 1);
+        retryScheduler.schedule(() -> offer(push), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static class Push {
+        private final Message message;
+        private final long enqueuedAt = System.nanoTime();
+        private int attempts;
+
+        private Push(Message message) {
+            this.message = message;
+        }
+    }
+}
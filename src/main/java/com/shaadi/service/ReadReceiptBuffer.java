@@ -0,0 +1,72 @@
+package com.shaadi.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shaadi.entity.ConversationId;
+import com.shaadi.repository.ConversationRepository;
+import com.shaadi.repository.MessageRepository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Read receipts coming in over STOMP, written to the DB in batches.
+// A chat client sends one receipt per message it renders; only the latest
+// (reader, sender) pair matters because markAsRead flags every unread message
+// of the pair, so repeated receipts collapse into one update per flush.
+// Pending receipts are in memory only; a receipt lost on restart is re-sent the
+// next time the client opens the conversation.
+@Component
+public class ReadReceiptBuffer {
+    private final MessageRepository messageRepo;
+    private final ConversationRepository conversationRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    // reader id -> ids of the users whose messages they read; guarded by "this"
+    private Map<Long, Set<Long>> pending = new HashMap<>();
+
+    public ReadReceiptBuffer(MessageRepository messageRepo, ConversationRepository conversationRepo, PlatformTransactionManager transactionManager) {
+        this.messageRepo = messageRepo;
+        this.conversationRepo = conversationRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public synchronized void record(Long readerId, Long senderId) {
+        pending.computeIfAbsent(readerId, id -> new HashSet<>()).add(senderId);
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${shaadi.chat.read-receipts.flush-ms:2000}")
+    public void flush() {
+        Map<Long, Set<Long>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        // One transaction per reader keeps a bad row from rolling back everyone else's receipts
+        for (Map.Entry<Long, Set<Long>> entry : batch.entrySet()) {
+            Long readerId = entry.getKey();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (Long senderId : entry.getValue()) {
+                        messageRepo.markAsRead(readerId, senderId);
+                        conversationRepo.markAsRead(ConversationId.of(readerId, senderId), readerId);
+                    }
+                });
+            } catch (Exception e) {
+                System.err.println("❌ Failed to persist read receipts for user " + readerId + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.shaadi.service;
+
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.shaadi.entity.User;
+import com.shaadi.repository.UserRepository;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Resolves the token a client presents on the WebSocket handshake to a user id.
+// Accepts Firebase ID tokens and the short-lived session tokens issued here, which are
+// HS256-signed with shaadi.websocket.auth.session-secret and checked without a network
+// call. Verified tokens are cached until min(token expiry, cache TTL) so a reconnect storm
+// doesn't verify (and look up the user for) the same token again and again.
+@Service
+public class SocketTokenService {
+    private static final String ISSUER = "shaadi";
+
+    private final UserRepository userRepo;
+    private final SecretKey sessionKey;
+    private final JwtParser sessionParser;
+    private final long sessionTtlMillis;
+    private final long cacheTtlMillis;
+    private final int cacheMaxSize;
+
+    // Access-ordered map gives LRU eviction; all access is guarded by "this"
+    private final LinkedHashMap<String, Verified> verified;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter rejected;
+    private final Timer firebaseVerify;
+    private final Timer sessionVerify;
+
+    public SocketTokenService(UserRepository userRepo, MeterRegistry meterRegistry,
+                              @Value("${shaadi.websocket.auth.session-secret:}") String sessionSecret,
+                              @Value("${shaadi.websocket.auth.session-ttl-ms:86400000}") long sessionTtlMillis,
+                              @Value("${shaadi.websocket.auth.cache-ttl-ms:300000}") long cacheTtlMillis,
+                              @Value("${shaadi.websocket.auth.cache-max-size:50000}") int cacheMaxSize) {
+        this.userRepo = userRepo;
+        // HS256 needs at least 256 bits of key; without a secret session tokens are disabled
+        if (sessionSecret.getBytes(StandardCharsets.UTF_8).length >= 32) {
+            this.sessionKey = Keys.hmacShaKeyFor(sessionSecret.getBytes(StandardCharsets.UTF_8));
+            this.sessionParser = Jwts.parserBuilder().setSigningKey(sessionKey).requireIssuer(ISSUER).build();
+        } else {
+            if (!sessionSecret.isEmpty()) {
+                System.err.println("⚠️ shaadi.websocket.auth.session-secret is shorter than 32 bytes, session tokens disabled");
+            }
+            this.sessionKey = null;
+            this.sessionParser = null;
+        }
+        this.sessionTtlMillis = sessionTtlMillis;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cacheMaxSize = cacheMaxSize;
+        this.verified = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+                return size() > SocketTokenService.this.cacheMaxSize;
+            }
+        };
+
+        this.cacheHits = meterRegistry.counter("shaadi.websocket.auth.cache", "result", "hit");
+        this.cacheMisses = meterRegistry.counter("shaadi.websocket.auth.cache", "result", "miss");
+        this.rejected = meterRegistry.counter("shaadi.websocket.auth.rejected");
+        this.firebaseVerify = Timer.builder("shaadi.websocket.auth.verify").tag("token", "firebase").register(meterRegistry);
+        this.sessionVerify = Timer.builder("shaadi.websocket.auth.verify").tag("token", "session").register(meterRegistry);
+    }
+
+    // Id of the user the token belongs to, or null when it is invalid, expired or unknown
+    public Long resolveUserId(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Verified cached = verified.get(token);
+            if (cached != null) {
+                if (cached.validUntil > now) {
+                    cacheHits.increment();
+                    return cached.userId;
+                }
+                verified.remove(token);
+            }
+        }
+        cacheMisses.increment();
+
+        Verified result = isSessionToken(token) ? verifySessionToken(token, now) : verifyFirebaseToken(token, now);
+        if (result == null) {
+            rejected.increment();
+            return null;
+        }
+        synchronized (this) {
+            verified.put(token, result);
+        }
+        return result.userId;
+    }
+
+    // Exchanges a Firebase ID token for a session token that is cheap to verify on reconnect
+    public String issueSessionToken(String firebaseIdToken) {
+        if (sessionKey == null) {
+            throw new IllegalStateException("Session tokens are not configured");
+        }
+        Long userId = resolveUserId(firebaseIdToken);
+        if (userId == null) {
+            throw new IllegalArgumentException("Invalid ID token");
+        }
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setIssuer(ISSUER)
+                .setSubject(String.valueOf(userId))
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + sessionTtlMillis))
+                .signWith(sessionKey)
+                .compact();
+    }
+
+    public long getSessionTtlMillis() {
+        return sessionTtlMillis;
+    }
+
+    public synchronized int cacheSize() {
+        return verified.size();
+    }
+
+    // Firebase ID tokens are RS256; only our own HS256 tokens are checked locally.
+    // The header is tiny, so decode it rather than attempting a full parse.
+    private boolean isSessionToken(String token) {
+        if (sessionParser == null) {
+            return false;
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        try {
+            String header = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+            return header.contains("\"HS256\"");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private Verified verifySessionToken(String token, long now) {
+        long start = System.nanoTime();
+        try {
+            Claims claims = sessionParser.parseClaimsJws(token).getBody();
+            long validUntil = Math.min(claims.getExpiration().getTime(), now + cacheTtlMillis);
+            return new Verified(Long.valueOf(claims.getSubject()), validUntil);
+        } catch (JwtException | IllegalArgumentException e) {
+            System.err.println("❌ Rejected WebSocket session token: " + e.getMessage());
+            return null;
+        } finally {
+            sessionVerify.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Verified verifyFirebaseToken(String token, long now) {
+        if (FirebaseApp.getApps().isEmpty()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            FirebaseToken decoded = FirebaseAuth.getInstance().verifyIdToken(token);
+            User user = userRepo.findByFirebaseUid(decoded.getUid()).orElse(null);
+            if (user == null) {
+                return null;
+            }
+            Object exp = decoded.getClaims().get("exp");
+            long expiresAt = exp instanceof Number ? ((Number) exp).longValue() * 1000 : now + cacheTtlMillis;
+            return new Verified(user.getId(), Math.min(expiresAt, now + cacheTtlMillis));
+        } catch (FirebaseAuthException | IllegalArgumentException e) {
+            System.err.println("❌ Rejected Firebase ID token: " + e.getMessage());
+            return null;
+        } finally {
+            firebaseVerify.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class Verified {
+        private final Long userId;
+        private final long validUntil;
+
+        private Verified(Long userId, long validUntil) {
+            this.userId = userId;
+            this.validUntil = validUntil;
+        }
+    }
+}
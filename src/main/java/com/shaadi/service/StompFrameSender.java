@@ -0,0 +1,43 @@
+package com.shaadi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+// Sends one frame to several users' queues, serializing it to JSON once.
+// The same bytes go to every recipient; only the message headers are built per send.
+@Component
+public class StompFrameSender {
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    public StompFrameSender(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public void sendToUsers(String destination, Object frame, Long... userIds) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(frame);
+        } catch (JsonProcessingException e) {
+            System.err.println("❌ Failed to serialize " + destination + " frame: " + e.getMessage());
+            return;
+        }
+        for (Long userId : userIds) {
+            // A prebuilt byte[] message skips the template's converters (which would serialize
+            // it again); headers can't be shared because the template fills in the destination
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            accessor.setLeaveMutable(true);
+            Message<byte[]> message = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+            messagingTemplate.send(messagingTemplate.getUserDestinationPrefix() + userId + destination, message);
+        }
+    }
+}
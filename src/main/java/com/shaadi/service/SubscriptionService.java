@@ -1,8 +1,16 @@
 package com.shaadi.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.shaadi.entity.Subscription;
 import com.shaadi.entity.SubscriptionStatus;
@@ -12,10 +20,14 @@ import com.shaadi.repository.SubscriptionRepository;
 import com.shaadi.repository.UserRepository;
 import com.shaadi.repository.PlanRepository;
 import com.shaadi.repository.PhotoRepository;
+import com.shaadi.util.AfterCommit;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -24,30 +36,89 @@ public class SubscriptionService {
     private final UserRepository userRepo;
     private final PlanRepository planRepo;
     private final PhotoRepository photoRepo;
+    private final ChatSessionCache chatSessionCache;
+    private final EntitlementCache entitlementCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int expiryChunkSize;
 
-    public SubscriptionService(SubscriptionRepository subscriptionRepo, UserRepository userRepo, PlanRepository planRepo, PhotoRepository photoRepo) {
+    private final Counter expiredCounter;
+    private final Counter photosTrimmedCounter;
+    private final Timer expiryChunkTimer;
+
+    public SubscriptionService(SubscriptionRepository subscriptionRepo, UserRepository userRepo, PlanRepository planRepo, PhotoRepository photoRepo, ChatSessionCache chatSessionCache, EntitlementCache entitlementCache,
+                               PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                               @Value("${shaadi.subscriptions.expiry.chunk-size:500}") int expiryChunkSize) {
         this.subscriptionRepo = subscriptionRepo;
         this.userRepo = userRepo;
         this.planRepo = planRepo;
         this.photoRepo = photoRepo;
+        this.chatSessionCache = chatSessionCache;
+        this.entitlementCache = entitlementCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expiryChunkSize = Math.max(1, expiryChunkSize);
+        this.expiredCounter = meterRegistry.counter("shaadi.subscriptions.expired");
+        this.photosTrimmedCounter = meterRegistry.counter("shaadi.subscriptions.photos.trimmed");
+        this.expiryChunkTimer = meterRegistry.timer("shaadi.subscriptions.expiry.chunk");
     }
 
-    // Method to update expired subscriptions
-    public void updateExpiredSubscriptions() {
-        List<Subscription> expiredSubs = subscriptionRepo.findByStatusAndExpiryDateBefore(SubscriptionStatus.ACTIVE, LocalDateTime.now());
-        for (Subscription sub : expiredSubs) {
-            sub.setStatus(SubscriptionStatus.EXPIRED);
-            // Reset chat slots when subscription expires
-            sub.setUsedChatSlots(0);
-            sub.setChatLimit(0);
-            subscriptionRepo.save(sub);
-            // Remove excess photos when subscription expires
-            removeExcessPhotos(sub.getUser());
+    // Expires ACTIVE subscriptions past their expiry date.
+    // Works through them in id order, one short transaction per chunk, so rows are never
+    // locked for the whole run and a failure only loses the current chunk. Returns the number expired.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int updateExpiredSubscriptions() {
+        LocalDateTime now = LocalDateTime.now();
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            List<Object[]> chunk = subscriptionRepo.findExpiredChunk(now, afterId, PageRequest.of(0, expiryChunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            Long fromId = (Long) chunk.get(0)[0];
+            Long toId = (Long) chunk.get(chunk.size() - 1)[0];
+            Set<Long> userIds = new HashSet<>();
+            for (Object[] row : chunk) {
+                userIds.add((Long) row[1]);
+            }
+
+            Integer expired = expiryChunkTimer.record(() -> transactionTemplate.execute(status -> expireChunk(fromId, toId, now, userIds)));
+            if (expired != null) {
+                expiredCounter.increment(expired);
+                total += expired;
+            }
+            afterId = toId;
+            if (chunk.size() < expiryChunkSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            System.out.println("⏰ Expired " + total + " subscriptions");
+        }
+        return total;
+    }
+
+    private int expireChunk(Long fromId, Long toId, LocalDateTime now, Set<Long> userIds) {
+        // Resets chat slots along with the status
+        int expired = subscriptionRepo.expireRange(fromId, toId, now);
+        // Non-subscribers keep only their first photo
+        trimExcessPhotos(userIds);
+        entitlementCache.invalidateAll(userIds);
+        chatSessionCache.invalidateUsers(userIds);
+        return expired;
+    }
+
+    // Expires a single subscription when ExpiryScheduler fires it; false when it was renewed or already expired
+    public boolean expireSubscription(Long subscriptionId, Long userId) {
+        if (expireChunk(subscriptionId, subscriptionId, LocalDateTime.now(), Set.of(userId)) == 0) {
+            return false;
         }
+        AfterCommit.run(expiredCounter::increment);
+        return true;
     }
 
-    // Scheduled job to run daily at midnight
-    @Scheduled(cron = "0 0 0 * * ?")
+    // Runs every 15 minutes by default; each run only touches subscriptions that expired since the last one
+    @Scheduled(cron = "${shaadi.subscriptions.expiry.cron:0 */15 * * * ?}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void scheduledExpiryCheck() {
         updateExpiredSubscriptions();
     }
@@ -65,6 +136,10 @@ public class SubscriptionService {
         LocalDateTime now = LocalDateTime.now();
         Integer actualDuration = durationMonths != null ? durationMonths : plan.getDurationMonths();
 
+        // Cached entitlements and chat sessions hold the subscription; drop them once this commits
+        entitlementCache.invalidate(userId);
+        chatSessionCache.invalidateUser(userId);
+
         // Check for existing active subscription
         Optional<Subscription> existingActive = subscriptionRepo.findFirstByUserAndStatusOrderByExpiryDateDesc(user, SubscriptionStatus.ACTIVE);
 
@@ -99,19 +174,20 @@ public class SubscriptionService {
             sub.setUsedChatSlots(0);
             sub.setChatLimit(0);
             subscriptionRepo.save(sub);
-            // Remove excess photos when subscription is revoked
-            removeExcessPhotos(user);
         }
+        // Remove excess photos when subscription is revoked
+        if (!activeSubscriptions.isEmpty()) {
+            trimExcessPhotos(List.of(userId));
+        }
+        entitlementCache.invalidate(userId);
+        chatSessionCache.invalidateUser(userId);
     }
 
-    private void removeExcessPhotos(User user) {
-        List<com.shaadi.entity.Photo> photos = photoRepo.findByUser(user);
-        int maxPhotos = 1; // Default for non-subscribers
-        if (photos.size() > maxPhotos) {
-            // Remove excess photos, keeping only the first one
-            for (int i = maxPhotos; i < photos.size(); i++) {
-                photoRepo.delete(photos.get(i));
-            }
+    // Deletes all but the first photo of each user that has no active subscription left
+    private void trimExcessPhotos(Collection<Long> userIds) {
+        List<Long> excess = photoRepo.findExcessPhotoIds(userIds);
+        if (!excess.isEmpty()) {
+            photosTrimmedCounter.increment(photoRepo.deleteByIdIn(excess));
         }
     }
 }
@@ -3,13 +3,22 @@ package com.shaadi.service;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
+import com.shaadi.entity.Block;
 import com.shaadi.entity.Favourite;
 import com.shaadi.entity.Plan;
 import com.shaadi.entity.Role;
@@ -18,16 +27,28 @@ import com.shaadi.entity.SubscriptionStatus;
 import com.shaadi.entity.User;
 import com.shaadi.repository.BlockRepository;
 import com.shaadi.repository.ChatRequestRepository;
+import com.shaadi.repository.ConversationRepository;
 import com.shaadi.repository.FavouriteRepository;
 import com.shaadi.repository.MessageRepository;
+import com.shaadi.repository.NotificationCounterRepository;
 import com.shaadi.repository.NotificationRepository;
 import com.shaadi.repository.PlanRepository;
 import com.shaadi.repository.SubscriptionRepository;
 import com.shaadi.repository.UserRepository;
+import com.shaadi.dto.CursorPageDto;
+import com.shaadi.dto.ProfileSearchCriteria;
 import com.shaadi.dto.SubscriptionResponseDto;
 import com.shaadi.service.CloudflareR2Service;
 
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -35,6 +56,9 @@ import java.util.UUID;
 @Service
 @Transactional
 public class UserService {
+    public static final int MAX_SEARCH_PAGE_SIZE = 50;
+    public static final int MAX_SUBSCRIPTION_HISTORY_PAGE_SIZE = 100;
+
     private final UserRepository userRepo;
     private final PlanRepository planRepo;
     private final SubscriptionRepository subscriptionRepo;
@@ -42,10 +66,24 @@ public class UserService {
     private final FavouriteRepository favouriteRepo;
     private final BlockRepository blockRepo;
     private final ChatRequestRepository chatRequestRepo;
+    private final ConversationRepository conversationRepo;
     private final NotificationRepository notificationRepo;
+    private final NotificationCounterRepository notificationCounterRepo;
     private final CloudflareR2Service cloudflareR2Service;
+    private final BlockGraphCache blockGraphCache;
+    private final ProfileIndex profileIndex;
+    private final ChatSessionCache chatSessionCache;
+    private final EntitlementCache entitlementCache;
+    private final TransactionTemplate transactionTemplate;
+
+    // "db" runs searches as SQL, "index" serves them from the in-memory ProfileIndex
+    @Value("${shaadi.search.engine:db}")
+    private String searchEngine;
+
+    @Value("${shaadi.search.backfill.chunk-size:5000}")
+    private int backfillChunkSize;
 
-    public UserService(UserRepository userRepo, PlanRepository planRepo, SubscriptionRepository subscriptionRepo, MessageRepository messageRepo, FavouriteRepository favouriteRepo, BlockRepository blockRepo, ChatRequestRepository chatRequestRepo, NotificationRepository notificationRepo, CloudflareR2Service cloudflareR2Service) {
+    public UserService(UserRepository userRepo, PlanRepository planRepo, SubscriptionRepository subscriptionRepo, MessageRepository messageRepo, FavouriteRepository favouriteRepo, BlockRepository blockRepo, ChatRequestRepository chatRequestRepo, ConversationRepository conversationRepo, NotificationRepository notificationRepo, NotificationCounterRepository notificationCounterRepo, CloudflareR2Service cloudflareR2Service, BlockGraphCache blockGraphCache, ProfileIndex profileIndex, ChatSessionCache chatSessionCache, EntitlementCache entitlementCache, PlatformTransactionManager transactionManager) {
         this.userRepo = userRepo;
         this.planRepo = planRepo;
         this.subscriptionRepo = subscriptionRepo;
@@ -53,60 +91,39 @@ public class UserService {
         this.favouriteRepo = favouriteRepo;
         this.blockRepo = blockRepo;
         this.chatRequestRepo = chatRequestRepo;
+        this.conversationRepo = conversationRepo;
         this.notificationRepo = notificationRepo;
+        this.notificationCounterRepo = notificationCounterRepo;
         this.cloudflareR2Service = cloudflareR2Service;
+        this.blockGraphCache = blockGraphCache;
+        this.profileIndex = profileIndex;
+        this.chatSessionCache = chatSessionCache;
+        this.entitlementCache = entitlementCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public Optional<SubscriptionResponseDto> getActiveSubscriptionDtoByUserId(Long userId) {
-        Optional<User> userOpt = userRepo.findById(userId);
-        if (userOpt.isEmpty()) {
-            return Optional.empty();
-        }
-        User user = userOpt.get();
-
-        Optional<Subscription> subscriptionOpt = subscriptionRepo.findFirstByUserAndStatusOrderByExpiryDateDesc(user, SubscriptionStatus.ACTIVE);
-
-        return subscriptionOpt.map(sub -> {
-            SubscriptionResponseDto dto = new SubscriptionResponseDto();
-            dto.setSubscriptionId(sub.getId());
-            dto.setUserId(user.getId());
-            Plan plan = sub.getPlan();
-            dto.setPlanId(plan.getId());
-            dto.setPlanName(plan.getName());
-            dto.setPlanDurationMonths(plan.getDurationMonths());
-            dto.setPlanChatLimit(plan.getChatLimit());
-            dto.setStartDate(sub.getStartDate());
-            dto.setExpiryDate(sub.getExpiryDate());
-            dto.setStatus(sub.getStatus().name());
-            dto.setChatLimit(sub.getChatLimit());
-            return dto;
-        });
-    }
-
-    public List<SubscriptionResponseDto> getSubscriptionHistoryByUserId(Long userId) {
-        Optional<User> userOpt = userRepo.findById(userId);
-        if (userOpt.isEmpty()) {
-            return List.of();
-        }
-        User user = userOpt.get();
-
-        List<Subscription> subscriptions = subscriptionRepo.findByUserOrderByStartDateDesc(user);
-
-        return subscriptions.stream().map(sub -> {
-            SubscriptionResponseDto dto = new SubscriptionResponseDto();
-            dto.setSubscriptionId(sub.getId());
-            dto.setUserId(user.getId());
-            Plan plan = sub.getPlan();
-            dto.setPlanId(plan.getId());
-            dto.setPlanName(plan.getName());
-            dto.setPlanDurationMonths(plan.getDurationMonths());
-            dto.setPlanChatLimit(plan.getChatLimit());
-            dto.setStartDate(sub.getStartDate());
-            dto.setExpiryDate(sub.getExpiryDate());
-            dto.setStatus(sub.getStatus().name());
-            dto.setChatLimit(sub.getChatLimit());
-            return dto;
-        }).toList();
+        return subscriptionRepo.findActiveDtos(userId, PageRequest.of(0, 1)).stream().findFirst();
+    }
+
+    // Newest first; the next cursor is the last subscriptionId of the page, to be passed back as beforeId
+    public CursorPageDto<SubscriptionResponseDto> getSubscriptionHistoryByUserId(Long userId, Long beforeId, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_SUBSCRIPTION_HISTORY_PAGE_SIZE));
+        // One extra row tells whether another page follows
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<SubscriptionResponseDto> history;
+        if (beforeId == null) {
+            history = subscriptionRepo.findHistoryDtos(userId, page);
+        } else {
+            LocalDateTime beforeStart = subscriptionRepo.findStartDate(beforeId, userId)
+                    .orElseThrow(() -> new IllegalArgumentException("Invalid cursor"));
+            history = subscriptionRepo.findHistoryDtosBefore(userId, beforeStart, beforeId, page);
+        }
+        if (history.size() <= size) {
+            return new CursorPageDto<>(history, null);
+        }
+        List<SubscriptionResponseDto> items = history.subList(0, size);
+        return new CursorPageDto<>(items, String.valueOf(items.get(size - 1).getSubscriptionId()));
     }
 
     public User register(User user) {
@@ -141,6 +158,7 @@ public class UserService {
             // Profile fields are null on registration
             System.out.println("💾 Saving user to database...");
             User savedUser = userRepo.save(user);
+            profileIndex.index(savedUser);
             System.out.println("✅ User registered successfully with ID: " + savedUser.getId());
             return savedUser;
         } catch (Exception e) {
@@ -210,6 +228,28 @@ public class UserService {
     }
 
     public Page<User> findAll(String gender, Long currentUserId, Pageable pageable) {
+        return userRepo.findAll(profileFeedSpec(gender, currentUserId), pageable);
+    }
+
+    // Keyset pagination for the app's profile feed: rows after the cursor ordered by id.
+    // No count query and no OFFSET, so deep scrolling costs the same as the first page.
+    public CursorPageDto<User> findAfter(String gender, Long currentUserId, String cursor, int size) {
+        Long afterId = decodeCursor(cursor);
+        Specification<User> spec = profileFeedSpec(gender, currentUserId);
+        if (afterId != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThan(root.get("id"), afterId));
+        }
+
+        // Fetch one extra row to know whether another page exists
+        List<User> users = userRepo.findBy(spec, q -> q.sortBy(Sort.by("id")).limit(size + 1).all());
+        if (users.size() <= size) {
+            return new CursorPageDto<>(users, null);
+        }
+        List<User> page = users.subList(0, size);
+        return new CursorPageDto<>(page, encodeCursor(page.get(size - 1).getId()));
+    }
+
+    private Specification<User> profileFeedSpec(String gender, Long currentUserId) {
         Specification<User> spec = (root, query, cb) -> cb.conjunction();
 
         if (gender != null && !gender.isEmpty()) {
@@ -217,16 +257,52 @@ public class UserService {
                 cb.equal(cb.lower(root.get("gender")), gender.toLowerCase()));
         }
 
-        Page<User> users = userRepo.findAll(spec, pageable);
-
+        // Exclude users blocked in either direction inside the query itself, so the page
+        // and its total count are both computed by the database
         if (currentUserId != null) {
-            List<User> filteredUsers = users.getContent().stream()
-                    .filter(user -> !isBlocked(currentUserId, user.getId()) && !isBlocked(user.getId(), currentUserId))
-                    .toList();
-            return new org.springframework.data.domain.PageImpl<>(filteredUsers, pageable, filteredUsers.size());
+            spec = spec.and(notBlockedWith(currentUserId));
+        }
+
+        return spec;
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("u:" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
         }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith("u:")) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return Long.parseLong(decoded.substring(2));
+        } catch (IllegalArgumentException e) { // also covers NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
 
-        return users;
+    // NOT EXISTS anti-joins on Block for both directions; each one is backed by the
+    // (blocker_id, blocked_id) / (blocked_id, blocker_id) indexes on the block table
+    private static Specification<User> notBlockedWith(Long userId) {
+        return (root, query, cb) -> {
+            Subquery<Long> blockedByUser = query.subquery(Long.class);
+            Root<Block> outgoing = blockedByUser.from(Block.class);
+            blockedByUser.select(outgoing.get("id")).where(
+                    cb.equal(outgoing.get("blocker").get("id"), userId),
+                    cb.equal(outgoing.get("blocked").get("id"), root.get("id")));
+
+            Subquery<Long> blockedUser = query.subquery(Long.class);
+            Root<Block> incoming = blockedUser.from(Block.class);
+            blockedUser.select(incoming.get("id")).where(
+                    cb.equal(incoming.get("blocker").get("id"), root.get("id")),
+                    cb.equal(incoming.get("blocked").get("id"), userId));
+
+            return cb.and(cb.not(cb.exists(blockedByUser)), cb.not(cb.exists(blockedUser)));
+        };
     }
 
     public Optional<User> findById(Long id) {
@@ -293,7 +369,10 @@ public class UserService {
         existing.setBio(user.getBio());
         existing.setPhotoUrl(user.getPhotoUrl());
 
-        return userRepo.save(existing);
+        User savedUser = userRepo.save(existing);
+        profileIndex.index(savedUser);
+        chatSessionCache.invalidateUser(savedUser.getId());
+        return savedUser;
     }
 
     public void updateProfilePhoto(Long userId, String photoUrl) {
@@ -306,6 +385,7 @@ public class UserService {
         // Update the photo URL in database
         user.setPhotoUrl(photoUrl);
         userRepo.save(user);
+        chatSessionCache.invalidateUser(userId);
 
         // Delete old photo from Cloudflare R2 if it exists and is different from new URL
         if (oldPhotoUrl != null && !oldPhotoUrl.equals(photoUrl) && !oldPhotoUrl.isBlank()) {
@@ -335,11 +415,12 @@ public class UserService {
         // CreatedAt is handled by default value or @PrePersist if I had it, but the entity has = LocalDateTime.now()
         
         if (user.getPhotos() == null) {
-            user.setPhotos(new java.util.ArrayList<>());
+            user.setPhotos(new ArrayList<>());
         }
         user.getPhotos().add(photo);
         
         userRepo.save(user); // Cascades save to photo
+        chatSessionCache.invalidateUser(userId);
     }
 
     public void updateFcmToken(Long userId, String token) {
@@ -348,6 +429,7 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
         user.setFcmToken(token);
         userRepo.save(user);
+        chatSessionCache.invalidateUser(userId);
         System.out.println("✅ FCM token saved successfully for user " + userId);
     }
 
@@ -357,46 +439,141 @@ public class UserService {
                user.getReligion() != null && user.getCityTown() != null && user.getBio() != null;
     }
 
-    public List<User> search(Integer minAge, Integer maxAge, String name, String location, String religion, String gender) {
-        return search(minAge, maxAge, name, location, religion, gender, null);
+    public Page<User> search(ProfileSearchCriteria criteria, Long currentUserId, int page, int size) {
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE)), Sort.by("id"));
+        if ("index".equals(searchEngine) && profileIndex.isReady() && profileIndex.supports(criteria)) {
+            return searchIndex(criteria, currentUserId, pageable);
+        }
+        return searchDatabase(criteria, currentUserId, pageable);
     }
 
-    public List<User> search(Integer minAge, Integer maxAge, String name, String location, String religion, String gender, Long currentUserId) {
+    // Bitmap intersections in ProfileIndex, then one primary-key fetch for the page
+    private Page<User> searchIndex(ProfileSearchCriteria criteria, Long currentUserId, Pageable pageable) {
+        long[] excluded = currentUserId != null ? blockGraphCache.blockedEitherWay(currentUserId) : new long[0];
+        BitSet matches = profileIndex.search(criteria, excluded);
+
+        List<Long> pageIds = new ArrayList<>(pageable.getPageSize());
+        int skip = (int) pageable.getOffset();
+        for (int id = matches.nextSetBit(0); id >= 0 && pageIds.size() < pageable.getPageSize(); id = matches.nextSetBit(id + 1)) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                pageIds.add((long) id);
+            }
+        }
+
+        List<User> users = new ArrayList<>(userRepo.findAllById(pageIds));
+        users.sort(Comparator.comparing(User::getId));
+        return new PageImpl<>(users, pageable, matches.cardinality());
+    }
+
+    private Page<User> searchDatabase(ProfileSearchCriteria criteria, Long currentUserId, Pageable pageable) {
         Specification<User> spec = (root, query, cb) -> cb.conjunction();
 
-        if (minAge != null && maxAge != null) {
-            spec = spec.and((root, query, cb) -> cb.between(root.get("age"), minAge, maxAge));
-        } else if (minAge != null) {
-            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("age"), minAge));
-        } else if (maxAge != null) {
-            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("age"), maxAge));
+        // Gender, religion and age come first to line up with idx_users_gender_religion_age
+        String gender = criteria.getGender();
+        if (gender != null && !gender.isBlank()) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("gender"), capitalize(gender.trim())));
         }
 
-        if (name != null && !name.isEmpty()) {
-            spec = spec.and((root, query, cb) -> cb.like(cb.lower(root.get("name")), name.toLowerCase() + "%"));
+        String religion = User.searchKey(criteria.getReligion());
+        if (religion != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("religionKey"), religion));
         }
 
-        if (location != null && !location.isEmpty()) {
-            spec = spec.and((root, query, cb) -> cb.like(cb.lower(root.get("location")), "%" + location.toLowerCase() + "%"));
+        spec = spec.and(range("age", criteria.getMinAge(), criteria.getMaxAge()));
+
+        String state = User.searchKey(criteria.getState());
+        if (state != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("stateKey"), state));
         }
 
-        if (religion != null && !religion.isEmpty()) {
-            spec = spec.and((root, query, cb) -> cb.like(cb.lower(root.get("religion")), "%" + religion.toLowerCase() + "%"));
+        String district = User.searchKey(criteria.getDistrict());
+        if (district != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("districtKey"), district));
         }
 
-        if (gender != null && !gender.isEmpty()) {
-            spec = spec.and((root, query, cb) -> cb.equal(cb.lower(root.get("gender")), gender.toLowerCase()));
+        String cityTown = User.searchKey(criteria.getCityTown());
+        if (cityTown != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("cityTownKey"), cityTown));
+        }
+
+        String location = User.searchKey(criteria.getLocation());
+        if (location != null) {
+            spec = spec.and((root, query, cb) -> cb.or(
+                    cb.equal(root.get("cityTownKey"), location),
+                    cb.equal(root.get("districtKey"), location),
+                    cb.equal(root.get("stateKey"), location)));
+        }
+
+        spec = spec.and(facetEquals("casteKey", criteria.getCaste()))
+                .and(facetEquals("motherTongueKey", criteria.getMotherTongue()))
+                .and(facetEquals("maritalStatusKey", criteria.getMaritalStatus()))
+                .and(facetEquals("dietKey", criteria.getDiet()));
+
+        Boolean manglik = criteria.getManglik();
+        if (manglik != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("manglik"), manglik));
         }
 
-        List<User> users = userRepo.findAll(spec);
+        spec = spec.and(range("height", criteria.getMinHeight(), criteria.getMaxHeight()))
+                .and(range("annualIncome", criteria.getMinIncome(), criteria.getMaxIncome()));
+
+        String name = criteria.getName();
+        if (name != null && !name.isBlank()) {
+            spec = spec.and((root, query, cb) -> cb.like(cb.lower(root.get("name")), name.trim().toLowerCase() + "%"));
+        }
 
         if (currentUserId != null) {
-            users = users.stream()
-                    .filter(user -> !isBlocked(currentUserId, user.getId()) && !isBlocked(user.getId(), currentUserId))
-                    .toList();
+            spec = spec.and(notBlockedWith(currentUserId));
         }
 
-        return users;
+        return userRepo.findAll(spec, pageable);
+    }
+
+    // keyAttribute is one of the normalized columns User fills on save
+    private static Specification<User> facetEquals(String keyAttribute, String value) {
+        String key = User.searchKey(value);
+        if (key == null) {
+            return (root, query, cb) -> cb.conjunction();
+        }
+        return (root, query, cb) -> cb.equal(root.get(keyAttribute), key);
+    }
+
+    private static <T extends Comparable<? super T>> Specification<User> range(String attribute, T min, T max) {
+        return (root, query, cb) -> {
+            if (min != null && max != null) {
+                return cb.between(root.get(attribute), min, max);
+            } else if (min != null) {
+                return cb.greaterThanOrEqualTo(root.get(attribute), min);
+            } else if (max != null) {
+                return cb.lessThanOrEqualTo(root.get(attribute), max);
+            }
+            return cb.conjunction();
+        };
+    }
+
+    // Fills the normalized search columns for rows written before they were introduced.
+    // Walks the table in primary-key ranges, one short transaction each, and only rewrites rows
+    // with a missing key, so once everything is filled a start costs a few range reads.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void backfillSearchKeys() {
+        Long maxId = userRepo.findMaxId();
+        if (maxId == null) {
+            return;
+        }
+        // A zero or negative chunk size would never advance and hang startup
+        int chunkSize = Math.max(1, backfillChunkSize);
+        int updated = 0;
+        for (long fromId = 1; fromId <= maxId; fromId += chunkSize) {
+            long toId = fromId + chunkSize - 1;
+            long from = fromId;
+            updated += transactionTemplate.execute(status -> userRepo.backfillSearchKeys(from, toId));
+        }
+        if (updated > 0) {
+            System.out.println("✅ Backfilled search keys for " + updated + " users");
+        }
     }
 
     public void deleteUser(Long id) {
@@ -419,9 +596,15 @@ public class UserService {
         chatRequestRepo.deleteByReceiverId(id);
 
         // Delete notifications (both directions)
+        // (other users' unread counters are re-seeded once the notifications about this user are gone)
+        notificationCounterRepo.deleteForUnreadAbout(id);
+        notificationCounterRepo.deleteById(id);
         notificationRepo.deleteByRecipientId(id);
         notificationRepo.deleteByRelatedUserId(id);
 
+        // Delete conversations (either side)
+        conversationRepo.deleteByUserId(id);
+
         // Delete messages (both directions)
         messageRepo.deleteBySenderId(id);
         messageRepo.deleteByReceiverId(id);
@@ -431,6 +614,11 @@ public class UserService {
 
         // Finally delete the user (photos and remaining subscriptions will be deleted via cascade)
         userRepo.deleteById(id);
+
+        blockGraphCache.onUserDeleted(id);
+        profileIndex.remove(id);
+        entitlementCache.invalidate(id);
+        chatSessionCache.invalidateUser(id);
     }
 
 
@@ -443,6 +631,10 @@ public class UserService {
 
         LocalDateTime now = LocalDateTime.now();
 
+        // Cached entitlements and chat sessions hold the subscription; drop them once this commits
+        entitlementCache.invalidate(userId);
+        chatSessionCache.invalidateUser(userId);
+
         // Check for existing active subscription
         Optional<Subscription> existingActive = subscriptionRepo.findFirstByUserAndStatusOrderByExpiryDateDesc(user, SubscriptionStatus.ACTIVE);
 
@@ -526,8 +718,7 @@ if (Boolean.TRUE.equals(plan.getIsAddon())) {
 
         // Filter out blocked users
         return favourites.stream()
-                .filter(fav -> !isBlocked(userId, fav.getFavouritedUser().getId()) &&
-                              !isBlocked(fav.getFavouritedUser().getId(), userId))
+                .filter(fav -> !isBlockedEitherWay(userId, fav.getFavouritedUser().getId()))
                 .toList();
     }
 
@@ -554,6 +745,7 @@ if (Boolean.TRUE.equals(plan.getIsAddon())) {
         block.setBlocker(blocker);
         block.setBlocked(blocked);
         blockRepo.save(block);
+        blockGraphCache.onBlock(blockerId, blockedId);
     }
 
     public void unblockUser(Long blockerId, Long blockedId) {
@@ -565,6 +757,7 @@ if (Boolean.TRUE.equals(plan.getIsAddon())) {
         com.shaadi.entity.Block block = blockRepo.findByBlockerAndBlocked(blocker, blocked)
                 .orElseThrow(() -> new IllegalArgumentException("Block not found"));
         blockRepo.delete(block);
+        blockGraphCache.onUnblock(blockerId, blockedId);
     }
 
     public List<com.shaadi.entity.Block> getBlockedUsers(Long blockerId) {
@@ -574,19 +767,15 @@ if (Boolean.TRUE.equals(plan.getIsAddon())) {
     }
 
     public boolean isBlocked(Long blockerId, Long blockedId) {
-        User blocker = userRepo.findById(blockerId)
-                .orElseThrow(() -> new IllegalArgumentException("Blocker user not found"));
-        User blocked = userRepo.findById(blockedId)
-                .orElseThrow(() -> new IllegalArgumentException("Blocked user not found"));
+        return blockGraphCache.isBlocked(blockerId, blockedId);
+    }
 
-        return blockRepo.existsByBlockerAndBlocked(blocker, blocked);
+    public boolean isBlockedEitherWay(Long userId, Long otherUserId) {
+        return blockGraphCache.isBlockedEitherWay(userId, otherUserId);
     }
 
     private boolean hasActiveSubscription(User user) {
-        LocalDateTime now = LocalDateTime.now();
-        return subscriptionRepo.findFirstByUserAndStatusOrderByExpiryDateDesc(user, SubscriptionStatus.ACTIVE)
-                .map(sub -> sub.getExpiryDate().isAfter(now))
-                .orElse(false);
+        return entitlementCache.hasActive(user.getId(), LocalDateTime.now());
     }
 
     private String capitalize(String str) {
@@ -0,0 +1,190 @@
+package com.shaadi.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.apache.activemq.artemis.core.settings.impl.AddressSettings;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import com.shaadi.service.PresenceRegistry;
+import com.shaadi.service.SocketTokenService;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Two application instances in relay mode behind one embedded Artemis STOMP broker: a message
+// sent to a user on instance A must reach that user's session on instance B
+class BrokerRelayIntegrationTest {
+    private static final Long USER_ID = 42L;
+    private static final String TOKEN = "token-42";
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext instanceA;
+    private static ConfigurableApplicationContext instanceB;
+
+    @Configuration
+    @ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, ServletWebServerFactoryAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebSocketServletAutoConfiguration.class})
+    @Import(WebSocketConfig.class)
+    static class InstanceConfig {
+        @Bean
+        PresenceRegistry presenceRegistry() {
+            return new PresenceRegistry(30000);
+        }
+
+        @Bean
+        SocketAuthInterceptor socketAuthInterceptor() {
+            SocketTokenService tokenService = mock(SocketTokenService.class);
+            when(tokenService.resolveUserId(TOKEN)).thenReturn(USER_ID);
+            return new SocketAuthInterceptor(tokenService, new SimpleMeterRegistry(), false);
+        }
+    }
+
+    @BeforeAll
+    static void start(@TempDir Path brokerDir) throws Exception {
+        int stompPort = freePort();
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        configuration.setJMXManagementEnabled(false);
+        configuration.setBrokerInstance(brokerDir.toFile());
+        // Every destination is auto-created as a multicast address. Artemis tags the frames it delivers
+        // with destination-type, and the instance that resolves a broadcast user message re-sends it
+        // with that header, so /queue destinations must accept multicast sends too.
+        configuration.addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + stompPort + "?protocols=STOMP");
+        configuration.addAddressSetting("#", new AddressSettings()
+                .setDeadLetterAddress(SimpleString.toSimpleString("DLQ"))
+                .setExpiryAddress(SimpleString.toSimpleString("ExpiryQueue")));
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+
+        instanceA = startInstance(stompPort);
+        instanceB = startInstance(stompPort);
+        awaitUntil(() -> relayAvailable(instanceA) && relayAvailable(instanceB));
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (instanceA != null) {
+            instanceA.close();
+        }
+        if (instanceB != null) {
+            instanceB.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void userMessageSentOnOneInstanceReachesSessionOnAnother() throws Exception {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new StringMessageConverter());
+        client.setTaskScheduler(scheduler);
+
+        int portB = ((ServletWebServerApplicationContext) instanceB).getWebServer().getPort();
+        StompSession session = client.connectAsync("ws://localhost:" + portB + "/ws?token=" + TOKEN,
+                new StompSessionHandlerAdapter() { }).get(10, TimeUnit.SECONDS);
+        try {
+            BlockingQueue<String> received = new LinkedBlockingQueue<>();
+            CountDownLatch subscribed = new CountDownLatch(1);
+            session.setAutoReceipt(true);
+            session.subscribe("/user/queue/messages", new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return String.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    received.add((String) payload);
+                }
+            }).addReceiptTask(subscribed::countDown);
+            assertThat(subscribed.await(10, TimeUnit.SECONDS)).isTrue();
+
+            instanceA.getBean(SimpMessagingTemplate.class)
+                    .convertAndSendToUser(String.valueOf(USER_ID), "/queue/messages", "hello from A");
+
+            assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("hello from A");
+        } finally {
+            session.disconnect();
+            scheduler.shutdown();
+        }
+    }
+
+    private static ConfigurableApplicationContext startInstance(int stompPort) {
+        return new SpringApplicationBuilder(InstanceConfig.class)
+                .web(WebApplicationType.SERVLET)
+                // Arguments, so they win over application.properties
+                .run("--server.port=0",
+                        "--shaadi.websocket.broker=relay",
+                        "--shaadi.websocket.relay.host=127.0.0.1",
+                        "--shaadi.websocket.relay.port=" + stompPort,
+                        // The relay drops its broker connections on shutdown, which Artemis reports as warnings
+                        "--logging.level.org.apache.activemq.artemis=ERROR");
+    }
+
+    private static boolean relayAvailable(ConfigurableApplicationContext context) {
+        return context.getBean(StompBrokerRelayMessageHandler.class).isBrokerAvailable();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 10s");
+            }
+            Thread.sleep(50);
+        }
+    }
+}
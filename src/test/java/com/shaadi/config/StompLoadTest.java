@@ -0,0 +1,184 @@
+package com.shaadi.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import com.shaadi.service.PresenceRegistry;
+import com.shaadi.service.SocketTokenService;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Opens thousands of STOMP sessions against one local instance with the real WebSocketConfig and
+// reports user-destination delivery latency percentiles. Excluded from the default build; run with
+//   mvn test -Dtest=StompLoadTest -Dsurefire.excludedGroups= -Dshaadi.load.sessions=5000
+@Tag("load")
+class StompLoadTest {
+    private static final int SESSIONS = Integer.getInteger("shaadi.load.sessions", 2000);
+    private static final int ROUNDS = Integer.getInteger("shaadi.load.rounds", 5);
+    private static final int CONNECT_BATCH = 100;
+
+    @Configuration
+    @ImportAutoConfiguration({PropertyPlaceholderAutoConfiguration.class, ServletWebServerFactoryAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebSocketServletAutoConfiguration.class})
+    @Import(WebSocketConfig.class)
+    static class InstanceConfig {
+        @Bean
+        PresenceRegistry presenceRegistry() {
+            return new PresenceRegistry(30000);
+        }
+
+        @Bean
+        SocketAuthInterceptor socketAuthInterceptor() {
+            // "token-<id>" authenticates as user <id>
+            SocketTokenService tokenService = mock(SocketTokenService.class);
+            when(tokenService.resolveUserId(anyString()))
+                    .thenAnswer(invocation -> Long.valueOf(invocation.<String>getArgument(0).substring("token-".length())));
+            return new SocketAuthInterceptor(tokenService, new SimpleMeterRegistry(), false);
+        }
+    }
+
+    @Test
+    void reportsDeliveryLatencyPercentiles() throws Exception {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(4);
+        scheduler.initialize();
+        WebSocketStompClient client = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        client.setMessageConverter(new StringMessageConverter());
+        client.setTaskScheduler(scheduler);
+
+        ConfigurableApplicationContext instance = new SpringApplicationBuilder(InstanceConfig.class)
+                .web(WebApplicationType.SERVLET)
+                .run("--server.port=0", "--server.tomcat.max-connections=" + (SESSIONS + 100));
+        SimpUserRegistry userRegistry = instance.getBean(SimpUserRegistry.class);
+        List<StompSession> sessions = new ArrayList<>();
+        try {
+            int port = ((ServletWebServerApplicationContext) instance).getWebServer().getPort();
+            SimpMessagingTemplate template = instance.getBean(SimpMessagingTemplate.class);
+
+            long[] latencies = new long[SESSIONS * ROUNDS];
+            AtomicInteger recorded = new AtomicInteger();
+            CountDownLatch[] rounds = new CountDownLatch[ROUNDS];
+            for (int r = 0; r < ROUNDS; r++) {
+                rounds[r] = new CountDownLatch(SESSIONS);
+            }
+
+            long connectStart = System.nanoTime();
+            for (int from = 1; from <= SESSIONS; from += CONNECT_BATCH) {
+                List<CompletableFuture<StompSession>> batch = new ArrayList<>();
+                for (int userId = from; userId < from + CONNECT_BATCH && userId <= SESSIONS; userId++) {
+                    batch.add(client.connectAsync("ws://localhost:" + port + "/ws?token=token-" + userId,
+                            new StompSessionHandlerAdapter() { }));
+                }
+                for (CompletableFuture<StompSession> connecting : batch) {
+                    sessions.add(connecting.get(30, TimeUnit.SECONDS));
+                }
+            }
+            long connectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+
+            for (StompSession session : sessions) {
+                session.subscribe("/user/queue/messages", new StompFrameHandler() {
+                    @Override
+                    public Type getPayloadType(StompHeaders headers) {
+                        return String.class;
+                    }
+
+                    @Override
+                    public void handleFrame(StompHeaders headers, Object payload) {
+                        // Payload is "<round>:<send time in nanos>"
+                        String frame = (String) payload;
+                        int separator = frame.indexOf(':');
+                        long sentAt = Long.parseLong(frame.substring(separator + 1));
+                        latencies[recorded.getAndIncrement()] = System.nanoTime() - sentAt;
+                        rounds[Integer.parseInt(frame.substring(0, separator))].countDown();
+                    }
+                });
+            }
+            // The simple broker sends no receipts: wait until every subscription is registered and
+            // the inbound channel has handed them all to the broker
+            ThreadPoolTaskExecutor inbound = instance.getBean("clientInboundChannelExecutor", ThreadPoolTaskExecutor.class);
+            awaitUntil(() -> userRegistry.findSubscriptions(subscription -> true).size() == SESSIONS
+                    && inbound.getActiveCount() == 0 && inbound.getQueueSize() == 0);
+
+            // Each round sends one message to every user, then waits for all of them to arrive
+            for (int r = 0; r < ROUNDS; r++) {
+                for (int userId = 1; userId <= SESSIONS; userId++) {
+                    template.convertAndSendToUser(String.valueOf(userId), "/queue/messages", r + ":" + System.nanoTime());
+                }
+                assertThat(rounds[r].await(60, TimeUnit.SECONDS)).isTrue();
+            }
+
+            long[] sorted = Arrays.copyOf(latencies, recorded.get());
+            Arrays.sort(sorted);
+            System.out.printf("%d sessions connected in %d ms; %d messages delivered%n", SESSIONS, connectMillis, sorted.length);
+            System.out.printf("latency p50=%.2f ms p95=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                    percentileMillis(sorted, 50), percentileMillis(sorted, 95), percentileMillis(sorted, 99),
+                    sorted[sorted.length - 1] / 1e6);
+            assertThat(sorted).hasSize(SESSIONS * ROUNDS);
+        } finally {
+            for (StompSession session : sessions) {
+                if (session.isConnected()) {
+                    session.disconnect();
+                }
+            }
+            // Let the server see the sessions go before its channels shut down
+            awaitUntil(() -> userRegistry.getUserCount() == 0);
+            instance.close();
+            scheduler.shutdown();
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 60s");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,141 @@
+package com.shaadi.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.simp.user.UserRegistryMessageHandler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import com.shaadi.service.PresenceRegistry;
+import com.shaadi.service.SocketTokenService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// Builds the real message broker configuration without the rest of the application
+class WebSocketConfigTest {
+
+    @Configuration
+    @Import(WebSocketConfig.class)
+    static class TestConfig {
+        @Bean
+        PresenceRegistry presenceRegistry() {
+            return new PresenceRegistry(30000);
+        }
+
+        @Bean
+        SocketAuthInterceptor socketAuthInterceptor() {
+            return new SocketAuthInterceptor(mock(SocketTokenService.class), new SimpleMeterRegistry(), false);
+        }
+    }
+
+    @Nested
+    @SpringJUnitWebConfig(TestConfig.class)
+    class SimpleBroker {
+        @Autowired
+        private ApplicationContext context;
+
+        @Test
+        void usesInMemoryBrokerByDefault() {
+            assertThat(context.getBeansOfType(SimpleBrokerMessageHandler.class)).hasSize(1);
+            assertThat(context.getBeansOfType(StompBrokerRelayMessageHandler.class)).isEmpty();
+        }
+    }
+
+    @Nested
+    @SpringJUnitWebConfig(TestConfig.class)
+    @TestPropertySource(properties = {
+            "shaadi.websocket.broker=relay",
+            "shaadi.websocket.relay.host=broker.internal",
+            "shaadi.websocket.relay.port=61614",
+            "shaadi.websocket.relay.login=shaadi",
+            "shaadi.websocket.relay.passcode=secret",
+            "shaadi.websocket.relay.virtual-host=/chat"
+    })
+    class BrokerRelay {
+        @Autowired
+        private ApplicationContext context;
+
+        @Test
+        void relaysToExternalBrokerWhenConfigured() {
+            assertThat(context.getBeansOfType(SimpleBrokerMessageHandler.class)).isEmpty();
+
+            StompBrokerRelayMessageHandler relay = context.getBean(StompBrokerRelayMessageHandler.class);
+            assertThat(relay.getRelayHost()).isEqualTo("broker.internal");
+            assertThat(relay.getRelayPort()).isEqualTo(61614);
+            assertThat(relay.getSystemLogin()).isEqualTo("shaadi");
+            assertThat(relay.getClientLogin()).isEqualTo("shaadi");
+            assertThat(relay.getVirtualHost()).isEqualTo("/chat");
+            assertThat(relay.getSystemHeartbeatSendInterval()).isEqualTo(10000);
+            assertThat(relay.getDestinationPrefixes()).containsExactlyInAnyOrder("/topic", "/queue");
+        }
+
+        @Test
+        void broadcastsUsersAndUnresolvedDestinationsBetweenInstances() {
+            UserDestinationMessageHandler userDestinations = context.getBean(UserDestinationMessageHandler.class);
+            assertThat(userDestinations.getBroadcastDestination()).isEqualTo("/topic/unresolved-user-destination");
+            UserRegistryMessageHandler userRegistry = context.getBean(UserRegistryMessageHandler.class);
+            assertThat(userRegistry.getBroadcastDestination()).isEqualTo("/topic/simp-user-registry");
+        }
+    }
+
+    @Nested
+    @SpringJUnitWebConfig(TestConfig.class)
+    @TestPropertySource(properties = {
+            "shaadi.websocket.inbound.core-pool-size=3",
+            "shaadi.websocket.inbound.max-pool-size=6",
+            "shaadi.websocket.inbound.queue-capacity=100",
+            "shaadi.websocket.outbound.core-pool-size=4",
+            "shaadi.websocket.outbound.max-pool-size=12",
+            "shaadi.websocket.outbound.queue-capacity=200",
+            "shaadi.websocket.send-time-limit-ms=5000",
+            "shaadi.websocket.send-buffer-size-limit=131072",
+            "shaadi.websocket.message-size-limit=32768",
+            "shaadi.websocket.time-to-first-message-ms=15000",
+            "shaadi.websocket.heartbeat.pool-size=2"
+    })
+    class Limits {
+        @Autowired
+        private ApplicationContext context;
+
+        @Test
+        void sizesChannelPoolsFromProperties() {
+            ThreadPoolTaskExecutor inbound = context.getBean("clientInboundChannelExecutor", ThreadPoolTaskExecutor.class);
+            assertThat(inbound.getCorePoolSize()).isEqualTo(3);
+            assertThat(inbound.getMaxPoolSize()).isEqualTo(6);
+            assertThat(inbound.getQueueCapacity()).isEqualTo(100);
+
+            ThreadPoolTaskExecutor outbound = context.getBean("clientOutboundChannelExecutor", ThreadPoolTaskExecutor.class);
+            assertThat(outbound.getCorePoolSize()).isEqualTo(4);
+            assertThat(outbound.getMaxPoolSize()).isEqualTo(12);
+            assertThat(outbound.getQueueCapacity()).isEqualTo(200);
+
+            ThreadPoolTaskScheduler heartbeat = context.getBean("heartBeatScheduler", ThreadPoolTaskScheduler.class);
+            assertThat(heartbeat.getPoolSize()).isEqualTo(2);
+        }
+
+        @Test
+        void appliesPerSessionTransportLimits() {
+            SubProtocolWebSocketHandler handler = context.getBean(SubProtocolWebSocketHandler.class);
+            assertThat(handler.getSendTimeLimit()).isEqualTo(5000);
+            assertThat(handler.getSendBufferSizeLimit()).isEqualTo(131072);
+            assertThat(handler.getTimeToFirstMessage()).isEqualTo(15000);
+
+            StompSubProtocolHandler stomp = (StompSubProtocolHandler) handler.getProtocolHandlers().get(0);
+            assertThat(stomp.getMessageSizeLimit()).isEqualTo(32768);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.shaadi.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.shaadi.entity.Message;
+import com.shaadi.entity.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MessageRepositoryTest {
+    @Autowired
+    private MessageRepository messageRepo;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void backfillFillsPairsOnlyInRangeAndOnlyWhereMissing() {
+        User alice = saveUser("alice@example.com");
+        User bob = saveUser("bob@example.com");
+        Message first = saveMessage(bob, alice);
+        Message second = saveMessage(alice, bob);
+        // Rows written before the pair columns existed
+        jdbcTemplate.update("UPDATE message SET low_user_id = NULL, high_user_id = NULL");
+
+        assertThat(messageRepo.backfillUserPairs(first.getId(), first.getId())).isEqualTo(1);
+        entityManager.clear();
+        Message filled = messageRepo.findById(first.getId()).orElseThrow();
+        assertThat(filled.getLowUserId()).isEqualTo(Math.min(alice.getId(), bob.getId()));
+        assertThat(filled.getHighUserId()).isEqualTo(Math.max(alice.getId(), bob.getId()));
+        assertThat(messageRepo.findById(second.getId()).orElseThrow().getLowUserId()).isNull();
+
+        assertThat(messageRepo.backfillUserPairs(first.getId(), messageRepo.findMaxId())).isEqualTo(1);
+        assertThat(messageRepo.backfillUserPairs(first.getId(), messageRepo.findMaxId())).isZero();
+    }
+
+    private User saveUser(String email) {
+        User user = new User();
+        user.setName("Test");
+        user.setEmail(email);
+        return entityManager.persist(user);
+    }
+
+    private Message saveMessage(User sender, User receiver) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent("Hi");
+        Message saved = entityManager.persist(message);
+        entityManager.flush();
+        return saved;
+    }
+}
@@ -0,0 +1,124 @@
+package com.shaadi.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shaadi.entity.Notification;
+import com.shaadi.entity.NotificationCounter;
+import com.shaadi.entity.NotificationType;
+import com.shaadi.entity.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Each notification is written in its own committed transaction, as NotificationService does
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NotificationCounterRepositoryTest {
+    private static final int THREADS = 8;
+
+    @Autowired
+    private NotificationCounterRepository counterRepo;
+    @Autowired
+    private NotificationRepository notificationRepo;
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        counterRepo.deleteAll();
+        notificationRepo.deleteAll();
+        userRepo.deleteAll();
+    }
+
+    @Test
+    void firstIncrementSeedsFromExistingUnreadNotifications() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User recipient = saveUser("recipient@example.com");
+        // Unread notifications from before the counter existed
+        tx.executeWithoutResult(status -> {
+            saveNotification(recipient);
+            saveNotification(recipient);
+        });
+
+        tx.executeWithoutResult(status -> {
+            saveNotification(recipient);
+            counterRepo.increment(recipient.getId());
+        });
+        assertThat(unreadCount(recipient)).isEqualTo(3);
+
+        tx.executeWithoutResult(status -> {
+            saveNotification(recipient);
+            counterRepo.increment(recipient.getId());
+        });
+        assertThat(unreadCount(recipient)).isEqualTo(4);
+    }
+
+    @Test
+    void concurrentFirstNotificationsAreAllCounted() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User recipient = saveUser("recipient@example.com");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    tx.executeWithoutResult(status -> {
+                        saveNotification(recipient);
+                        counterRepo.increment(recipient.getId());
+                    });
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(unreadCount(recipient)).isEqualTo(THREADS);
+    }
+
+    private int unreadCount(User recipient) {
+        return counterRepo.findById(recipient.getId()).map(NotificationCounter::getUnreadCount).orElse(0);
+    }
+
+    private User saveUser(String email) {
+        User user = new User();
+        user.setName("Test");
+        user.setEmail(email);
+        return userRepo.save(user);
+    }
+
+    private void saveNotification(User recipient) {
+        Notification notification = new Notification();
+        notification.setType(NotificationType.REQUEST_RECEIVED);
+        notification.setMessage("New interest");
+        notification.setRecipient(recipient);
+        notificationRepo.save(notification);
+    }
+}
@@ -0,0 +1,111 @@
+package com.shaadi.repository;
+
+import com.shaadi.entity.Plan;
+import com.shaadi.entity.Subscription;
+import com.shaadi.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs against H2; each thread commits its own transaction, so the test itself must not hold one
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SubscriptionRepositoryTest {
+    private static final int CHAT_LIMIT = 10;
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 5;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepo;
+    @Autowired
+    private PlanRepository planRepo;
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        subscriptionRepo.deleteAll();
+        planRepo.deleteAll();
+        userRepo.deleteAll();
+    }
+
+    @Test
+    void concurrentConsumeChatSlotNeverExceedsChatLimit() throws Exception {
+        Long subscriptionId = createSubscription(CHAT_LIMIT);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int taken = 0;
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        Integer updated = tx.execute(status -> subscriptionRepo.consumeChatSlot(subscriptionId));
+                        taken += updated;
+                    }
+                    return taken;
+                }));
+            }
+            start.countDown();
+
+            int taken = 0;
+            for (Future<Integer> result : results) {
+                taken += result.get(30, TimeUnit.SECONDS);
+            }
+            assertThat(taken).isEqualTo(CHAT_LIMIT);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Subscription reloaded = subscriptionRepo.findById(subscriptionId).orElseThrow();
+        assertThat(reloaded.getUsedChatSlots()).isEqualTo(CHAT_LIMIT);
+        Integer extra = tx.execute(status -> subscriptionRepo.consumeChatSlot(subscriptionId));
+        assertThat(extra).isZero();
+    }
+
+    private Long createSubscription(int chatLimit) {
+        User user = new User();
+        user.setName("Slot Tester");
+        user.setEmail("slots@example.com");
+        user = userRepo.save(user);
+
+        Plan plan = new Plan();
+        plan.setName("Test Plan");
+        plan.setDurationMonths(1);
+        plan.setPrice(10.0);
+        plan.setChatLimit(chatLimit);
+        plan = planRepo.save(plan);
+
+        Subscription subscription = new Subscription();
+        subscription.setUser(user);
+        subscription.setPlan(plan);
+        subscription.setExpiryDate(LocalDateTime.now().plusMonths(1));
+        subscription.setChatLimit(chatLimit);
+        return subscriptionRepo.save(subscription).getId();
+    }
+}
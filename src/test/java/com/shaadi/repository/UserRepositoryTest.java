@@ -0,0 +1,64 @@
+package com.shaadi.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.shaadi.entity.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserRepositoryTest {
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void saveNormalizesSearchKeys() {
+        User user = saveUser("one@example.com");
+
+        assertThat(user.getCasteKey()).isEqualTo("brahmin");
+        assertThat(user.getMotherTongueKey()).isEqualTo("hindi");
+        assertThat(user.getMaritalStatusKey()).isEqualTo("never married");
+        assertThat(user.getDietKey()).isNull();
+    }
+
+    @Test
+    void backfillFillsMissingKeysOnlyOnceAndOnlyInRange() {
+        User first = saveUser("first@example.com");
+        User second = saveUser("second@example.com");
+        // Rows written before the key columns existed
+        jdbcTemplate.update("UPDATE users SET caste_key = NULL, mother_tongue_key = NULL, marital_status_key = NULL, religion_key = NULL");
+
+        assertThat(userRepo.backfillSearchKeys(first.getId(), first.getId())).isEqualTo(1);
+        entityManager.clear();
+        assertThat(userRepo.findById(first.getId()).orElseThrow().getCasteKey()).isEqualTo("brahmin");
+        assertThat(userRepo.findById(second.getId()).orElseThrow().getCasteKey()).isNull();
+
+        assertThat(userRepo.backfillSearchKeys(first.getId(), userRepo.findMaxId())).isEqualTo(1);
+        assertThat(userRepo.backfillSearchKeys(first.getId(), userRepo.findMaxId())).isZero();
+    }
+
+    private User saveUser(String email) {
+        User user = new User();
+        user.setName("Test");
+        user.setEmail(email);
+        user.setReligion("Hindu");
+        user.setCaste(" Brahmin ");
+        user.setMotherTongue("HINDI");
+        user.setMaritalStatus("Never Married");
+        User saved = userRepo.save(user);
+        entityManager.flush();
+        return saved;
+    }
+}
@@ -0,0 +1,176 @@
+package com.shaadi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shaadi.dto.ChatFrame;
+import com.shaadi.entity.ChatRequest;
+import com.shaadi.entity.ChatRequestStatus;
+import com.shaadi.entity.Message;
+import com.shaadi.entity.Plan;
+import com.shaadi.entity.Subscription;
+import com.shaadi.entity.SubscriptionStatus;
+import com.shaadi.entity.User;
+import com.shaadi.repository.ChatRequestRepository;
+import com.shaadi.repository.ConversationRepository;
+import com.shaadi.repository.MessageRepository;
+import com.shaadi.repository.PlanRepository;
+import com.shaadi.repository.SubscriptionRepository;
+import com.shaadi.repository.UserRepository;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// sendMessage against H2 with real repositories and caches; WebSocket delivery and the block check are stubbed
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChatServiceTest {
+    @Autowired
+    private MessageRepository messageRepo;
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private SubscriptionRepository subscriptionRepo;
+    @Autowired
+    private PlanRepository planRepo;
+    @Autowired
+    private ChatRequestRepository chatRequestRepo;
+    @Autowired
+    private ConversationRepository conversationRepo;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ChatService chatService;
+    private TransactionTemplate tx;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        EntitlementCache entitlementCache = new EntitlementCache(subscriptionRepo, new SimpleMeterRegistry(), 100);
+        ChatSessionCache chatSessionCache = new ChatSessionCache(userRepo, chatRequestRepo, entitlementCache, conversationRepo, 100);
+        chatService = new ChatService(messageRepo, userRepo, subscriptionRepo, chatRequestRepo, conversationRepo,
+                mock(NotificationService.class), mock(UserService.class), mock(SimpMessagingTemplate.class),
+                chatSessionCache, mock(StompFrameSender.class), entitlementCache, transactionManager);
+        tx = new TransactionTemplate(transactionManager);
+
+        alice = saveUser("Alice", "alice@example.com");
+        bob = saveUser("Bob", "bob@example.com");
+        Plan plan = new Plan();
+        plan.setName("Test Plan");
+        plan.setDurationMonths(1);
+        plan.setChatLimit(5);
+        plan = planRepo.save(plan);
+        subscribe(alice, plan);
+        subscribe(bob, plan);
+
+        ChatRequest request = new ChatRequest();
+        request.setSender(alice);
+        request.setReceiver(bob);
+        request.setStatus(ChatRequestStatus.ACCEPTED);
+        chatRequestRepo.save(request);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        conversationRepo.deleteAll();
+        messageRepo.deleteAll();
+        chatRequestRepo.deleteAll();
+        subscriptionRepo.deleteAll();
+        planRepo.deleteAll();
+        userRepo.deleteAll();
+    }
+
+    @Test
+    void firstMessageOpensConversationAndTakesOneSlot() {
+        ChatFrame frame = send(alice, bob, "Hello");
+
+        assertThat(frame.getSender().getName()).isEqualTo("Alice");
+        assertThat(frame.getReceiver().getId()).isEqualTo(bob.getId());
+        assertThat(frame.getContent()).isEqualTo("Hello");
+        assertThat(conversationRepo.count()).isEqualTo(1);
+        assertThat(subscriptionRepo.findFirstByUserIdAndStatusOrderByExpiryDateDesc(alice.getId(),
+                SubscriptionStatus.ACTIVE).orElseThrow().getUsedChatSlots()).isEqualTo(1);
+
+        send(alice, bob, "Still there?");
+        assertThat(messageRepo.count()).isEqualTo(2);
+        assertThat(subscriptionRepo.findFirstByUserIdAndStatusOrderByExpiryDateDesc(alice.getId(),
+                SubscriptionStatus.ACTIVE).orElseThrow().getUsedChatSlots()).isEqualTo(1);
+    }
+
+    @Test
+    void messageInWarmSessionIssuesTwoStatements() {
+        send(alice, bob, "Hello");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        send(alice, bob, "How are you?");
+
+        // The message insert and the conversation update; no user, request or subscription reads
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @Timeout(10)
+    void pairBackfillFinishesWithNonPositiveChunkSize() {
+        send(alice, bob, "Hello");
+        send(alice, bob, "Still there?");
+        ReflectionTestUtils.setField(chatService, "backfillChunkSize", 0);
+
+        chatService.backfillUserPairs();
+
+        assertThat(messageRepo.findAll()).allSatisfy(message -> assertThat(message.getLowUserId()).isNotNull());
+    }
+
+    private ChatFrame send(User from, User to, String content) {
+        // Only the ids, as a client would send them
+        User sender = new User();
+        sender.setId(from.getId());
+        User receiver = new User();
+        receiver.setId(to.getId());
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent(content);
+        return tx.execute(status -> chatService.sendMessage(message));
+    }
+
+    private User saveUser(String name, String email) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(email);
+        return userRepo.save(user);
+    }
+
+    private void subscribe(User user, Plan plan) {
+        Subscription subscription = new Subscription();
+        subscription.setUser(user);
+        subscription.setPlan(plan);
+        subscription.setExpiryDate(LocalDateTime.now().plusMonths(1));
+        subscription.setChatLimit(plan.getChatLimit());
+        subscriptionRepo.save(subscription);
+    }
+}
@@ -0,0 +1,40 @@
+package com.shaadi.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import com.shaadi.entity.SubscriptionStatus;
+import com.shaadi.repository.SubscriptionRepository;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EntitlementCacheTest {
+    private static final Long USER_ID = 7L;
+
+    private final SubscriptionRepository subscriptionRepo = mock(SubscriptionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EntitlementCache cache = new EntitlementCache(subscriptionRepo, meterRegistry, 100);
+
+    @Test
+    void hitForUserWithoutSubscriptionRecordsRealAge() {
+        when(subscriptionRepo.findFirstByUserIdAndStatusOrderByExpiryDateDesc(USER_ID, SubscriptionStatus.ACTIVE))
+                .thenReturn(Optional.empty());
+
+        assertThat(cache.get(USER_ID)).isNull();
+        assertThat(cache.get(USER_ID)).isNull();
+
+        verify(subscriptionRepo, times(1)).findFirstByUserIdAndStatusOrderByExpiryDateDesc(USER_ID, SubscriptionStatus.ACTIVE);
+        Timer age = meterRegistry.get("shaadi.entitlements.age").timer();
+        assertThat(age.count()).isEqualTo(1);
+        // The snapshot was loaded a moment ago, not at the epoch
+        assertThat(age.max(TimeUnit.SECONDS)).isLessThan(60);
+    }
+}
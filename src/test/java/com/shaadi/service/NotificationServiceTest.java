@@ -0,0 +1,80 @@
+package com.shaadi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shaadi.dto.NotificationFrame;
+import com.shaadi.entity.NotificationType;
+import com.shaadi.entity.User;
+import com.shaadi.repository.NotificationCounterRepository;
+import com.shaadi.repository.NotificationRepository;
+import com.shaadi.repository.UserRepository;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+// The delivery event is read on another thread after commit, so it must not need the persistence context
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NotificationServiceTest {
+    @Autowired
+    private NotificationRepository notificationRepo;
+    @Autowired
+    private NotificationCounterRepository counterRepo;
+    @Autowired
+    private UserRepository userRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        counterRepo.deleteAll();
+        notificationRepo.deleteAll();
+        userRepo.deleteAll();
+    }
+
+    @Test
+    void eventCarriesDeliveryDataForLazyReferences() {
+        User recipient = saveUser("Alice", "alice@example.com", "fcm-alice");
+        User related = saveUser("Bob", "bob@example.com", null);
+        NotificationService notificationService = new NotificationService(notificationRepo, userRepo, counterRepo,
+                events::add, transactionManager, mock(NotificationDigester.class));
+
+        // Uninitialized proxies, as a caller using getReferenceById would pass
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> notificationService.createNotification(
+                NotificationType.REQUEST_RECEIVED, "New interest",
+                userRepo.getReferenceById(recipient.getId()), userRepo.getReferenceById(related.getId())));
+
+        assertThat(events).hasSize(1);
+        NotificationCreatedEvent event = (NotificationCreatedEvent) events.get(0);
+        NotificationFrame frame = event.getFrame();
+        assertThat(frame.getRecipientId()).isEqualTo(recipient.getId());
+        assertThat(frame.getRelatedUser().getName()).isEqualTo("Bob");
+        assertThat(frame.getMessage()).isEqualTo("New interest");
+        assertThat(frame.getCreatedAt()).isNotNull();
+        assertThat(event.getFcmToken()).isEqualTo("fcm-alice");
+    }
+
+    private User saveUser(String name, String email, String fcmToken) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(email);
+        user.setFcmToken(fcmToken);
+        return userRepo.save(user);
+    }
+}
@@ -0,0 +1,142 @@
+package com.shaadi.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import com.shaadi.dto.ProfileFacetsDto;
+import com.shaadi.dto.ProfileSearchCriteria;
+import com.shaadi.entity.User;
+import com.shaadi.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// Range searches after random inserts, updates and removes must match a brute-force scan
+class ProfileIndexTest {
+    private static final long[] NO_EXCLUSIONS = new long[0];
+
+    private final Random random = new Random(42);
+    private final UserRepository userRepo = mock(UserRepository.class);
+    private final ProfileIndex index = new ProfileIndex(userRepo, "index");
+    // What the index should contain, by user id
+    private final Map<Long, User> expected = new HashMap<>();
+
+    @Test
+    void rangeSearchesStayCorrectAcrossWrites() {
+        List<ProfileFacetsDto> snapshot = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            User user = randomUser(id);
+            expected.put(id, user);
+            snapshot.add(toDoc(user));
+        }
+        when(userRepo.findProfileFacetsAfter(anyLong(), any(Pageable.class))).thenReturn(snapshot);
+        index.build();
+        assertSearchesMatch();
+
+        for (int i = 0; i < 3000; i++) {
+            long id = 1 + random.nextInt(2500);
+            if (random.nextInt(5) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                User user = randomUser(id);
+                index.index(user);
+                expected.put(id, user);
+            }
+            if (i % 250 == 0) {
+                assertSearchesMatch();
+            }
+        }
+        assertSearchesMatch();
+    }
+
+    @Test
+    void unsetValuesNeverMatchARange() {
+        when(userRepo.findProfileFacetsAfter(anyLong(), any(Pageable.class))).thenReturn(List.of());
+        index.build();
+        User user = randomUser(7);
+        user.setAge(null);
+        index.index(user);
+
+        ProfileSearchCriteria criteria = new ProfileSearchCriteria();
+        criteria.setMaxAge(100);
+        assertThat(index.search(criteria, NO_EXCLUSIONS).isEmpty()).isTrue();
+        assertThat(index.search(new ProfileSearchCriteria(), NO_EXCLUSIONS).get(7)).isTrue();
+    }
+
+    @Test
+    void staysEmptyUnlessIndexEngineIsSelected() {
+        ProfileIndex disabled = new ProfileIndex(userRepo, "db");
+
+        disabled.build();
+        disabled.index(randomUser(7));
+
+        verifyNoInteractions(userRepo);
+        assertThat(disabled.isReady()).isFalse();
+    }
+
+    private void assertSearchesMatch() {
+        for (int i = 0; i < 20; i++) {
+            ProfileSearchCriteria criteria = new ProfileSearchCriteria();
+            int minAge = 18 + random.nextInt(30);
+            criteria.setMinAge(minAge);
+            criteria.setMaxAge(minAge + random.nextInt(15));
+            if (random.nextBoolean()) {
+                criteria.setMinHeight(140 + random.nextInt(40));
+            }
+            if (random.nextBoolean()) {
+                criteria.setMaxIncome((long) random.nextInt(3000000));
+            }
+            assertThat(index.search(criteria, NO_EXCLUSIONS)).isEqualTo(bruteForce(criteria));
+        }
+    }
+
+    private BitSet bruteForce(ProfileSearchCriteria criteria) {
+        BitSet result = new BitSet();
+        for (User user : expected.values()) {
+            if (inRange(user.getAge(), criteria.getMinAge(), criteria.getMaxAge())
+                    && inRange(user.getHeight(), criteria.getMinHeight(), criteria.getMaxHeight())
+                    && inRange(user.getAnnualIncome(), criteria.getMinIncome(), criteria.getMaxIncome())) {
+                result.set(Math.toIntExact(user.getId()));
+            }
+        }
+        return result;
+    }
+
+    private static boolean inRange(Number value, Number min, Number max) {
+        if (min == null && max == null) {
+            return true;
+        }
+        return value != null
+                && (min == null || value.longValue() >= min.longValue())
+                && (max == null || value.longValue() <= max.longValue());
+    }
+
+    private User randomUser(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setGender(random.nextBoolean() ? "male" : "female");
+        // Few distinct ages and heights, so many users share a value
+        user.setAge(random.nextInt(10) == 0 ? null : 18 + random.nextInt(45));
+        user.setHeight(random.nextInt(10) == 0 ? null : 140 + random.nextInt(60));
+        user.setAnnualIncome(random.nextInt(10) == 0 ? null : (long) random.nextInt(3000000));
+        return user;
+    }
+
+    private static ProfileFacetsDto toDoc(User user) {
+        return new ProfileFacetsDto(user.getId(), user.getGender(), user.getReligion(), user.getCaste(),
+                user.getMotherTongue(), user.getMaritalStatus(), user.getDiet(), user.getManglik(), user.getState(),
+                user.getAge(), user.getHeight(), user.getAnnualIncome());
+    }
+}
@@ -0,0 +1,165 @@
+package com.shaadi.service;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Drives PushDispatcher against a stubbed FirebaseMessaging; no Firebase project is needed
+class PushDispatcherTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FirebaseMessaging messaging = mock(FirebaseMessaging.class);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private PushDispatcher dispatcher;
+
+    @AfterEach
+    void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void sendsQueuedPushesInBatchesOfAtMostBatchSize() throws Exception {
+        stubSendEach(attempt -> null);
+        dispatcher = newDispatcher(100, 4);
+
+        for (int i = 0; i < 1200; i++) {
+            dispatcher.enqueue("token-" + i, "title", "body", Map.of("type", "TEST"));
+        }
+
+        awaitUntil(() -> count("shaadi.push.sent") == 1200);
+        assertThat(batchSizes).allSatisfy(size -> assertThat(size).isBetween(1, 100));
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(1200);
+        assertThat(count("shaadi.push.failed")).isZero();
+    }
+
+    @Test
+    void retriesTransientFailuresWithBackoff() throws Exception {
+        // Every message fails once with UNAVAILABLE, then succeeds
+        stubSendEach(attempt -> attempt == 0 ? MessagingErrorCode.UNAVAILABLE : null);
+        dispatcher = newDispatcher(500, 4);
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.enqueue("token-" + i, "title", "body", null);
+        }
+
+        awaitUntil(() -> count("shaadi.push.sent") == 10);
+        assertThat(count("shaadi.push.retried")).isEqualTo(10);
+        assertThat(count("shaadi.push.failed")).isZero();
+    }
+
+    @Test
+    void givesUpOnPermanentFailuresAndAfterMaxAttempts() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        stubSendEach(attempt -> {
+            calls.incrementAndGet();
+            return MessagingErrorCode.UNAVAILABLE;
+        });
+        dispatcher = newDispatcher(500, 3);
+        dispatcher.enqueue("token", "title", "body", null);
+
+        awaitUntil(() -> count("shaadi.push.failed") == 1);
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(count("shaadi.push.retried")).isEqualTo(2);
+
+        stubSendEach(attempt -> MessagingErrorCode.INVALID_ARGUMENT);
+        dispatcher.enqueue("bad-token", "title", "body", null);
+
+        awaitUntil(() -> count("shaadi.push.failed") == 2);
+        assertThat(count("shaadi.push.retried")).isEqualTo(2);
+    }
+
+    @Test
+    void skipsPushesWithoutToken() {
+        stubSendEach(attempt -> null);
+        dispatcher = newDispatcher(500, 3);
+
+        dispatcher.enqueue(null, "title", "body", null);
+        dispatcher.enqueue("", "title", "body", null);
+
+        assertThat(dispatcher.queueDepth()).isZero();
+        assertThat(batchSizes).isEmpty();
+    }
+
+    private PushDispatcher newDispatcher(int batchSize, int maxAttempts) {
+        FCMService fcmService = new FCMService() {
+            @Override
+            protected FirebaseMessaging messaging() {
+                return messaging;
+            }
+        };
+        return new PushDispatcher(fcmService, meterRegistry, 10000, 1, batchSize, maxAttempts, 10);
+    }
+
+    // errorForAttempt maps how often a message was sent before (0 on its first send) to the error
+    // that send fails with, or null for success. Retries resend the same Message instance.
+    private void stubSendEach(IntFunction<MessagingErrorCode> errorForAttempt) {
+        Map<Message, Integer> attempts = new IdentityHashMap<>();
+        try {
+            when(messaging.sendEach(anyList())).thenAnswer(invocation -> {
+                List<Message> messages = invocation.getArgument(0);
+                batchSizes.add(messages.size());
+                List<SendResponse> responses = new ArrayList<>();
+                for (Message message : messages) {
+                    int attempt;
+                    synchronized (attempts) {
+                        attempt = attempts.merge(message, 1, Integer::sum) - 1;
+                    }
+                    responses.add(response(errorForAttempt.apply(attempt)));
+                }
+                BatchResponse batch = mock(BatchResponse.class);
+                when(batch.getResponses()).thenReturn(responses);
+                return batch;
+            });
+        } catch (FirebaseMessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static SendResponse response(MessagingErrorCode error) {
+        SendResponse response = mock(SendResponse.class);
+        if (error == null) {
+            when(response.isSuccessful()).thenReturn(true);
+        } else {
+            FirebaseMessagingException exception = mock(FirebaseMessagingException.class);
+            when(exception.getMessagingErrorCode()).thenReturn(error);
+            when(response.isSuccessful()).thenReturn(false);
+            when(response.getException()).thenReturn(exception);
+        }
+        return response;
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 10s");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
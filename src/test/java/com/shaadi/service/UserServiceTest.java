@@ -0,0 +1,100 @@
+package com.shaadi.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.shaadi.dto.CursorPageDto;
+import com.shaadi.dto.SubscriptionResponseDto;
+import com.shaadi.repository.BlockRepository;
+import com.shaadi.repository.ChatRequestRepository;
+import com.shaadi.repository.ConversationRepository;
+import com.shaadi.repository.FavouriteRepository;
+import com.shaadi.repository.MessageRepository;
+import com.shaadi.repository.NotificationCounterRepository;
+import com.shaadi.repository.NotificationRepository;
+import com.shaadi.repository.PlanRepository;
+import com.shaadi.repository.SubscriptionRepository;
+import com.shaadi.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+    private static final Long USER_ID = 7L;
+
+    private final SubscriptionRepository subscriptionRepo = mock(SubscriptionRepository.class);
+    private final UserRepository userRepo = mock(UserRepository.class);
+    private final UserService userService = new UserService(userRepo, mock(PlanRepository.class), subscriptionRepo,
+            mock(MessageRepository.class), mock(FavouriteRepository.class), mock(BlockRepository.class), mock(ChatRequestRepository.class),
+            mock(ConversationRepository.class), mock(NotificationRepository.class), mock(NotificationCounterRepository.class),
+            mock(CloudflareR2Service.class), mock(BlockGraphCache.class), mock(ProfileIndex.class), mock(ChatSessionCache.class),
+            mock(EntitlementCache.class), mock(PlatformTransactionManager.class));
+
+    @Test
+    void subscriptionHistoryReturnsCursorWhileMoreRowsFollow() {
+        // The service asks for one row more than the page size
+        when(subscriptionRepo.findHistoryDtos(USER_ID, PageRequest.of(0, 3))).thenReturn(history(30, 29, 28));
+
+        CursorPageDto<SubscriptionResponseDto> page = userService.getSubscriptionHistoryByUserId(USER_ID, null, 2);
+
+        assertThat(page.getItems()).extracting(SubscriptionResponseDto::getSubscriptionId).containsExactly(30L, 29L);
+        assertThat(page.getNextCursor()).isEqualTo("29");
+    }
+
+    @Test
+    void subscriptionHistoryHasNoCursorOnLastPage() {
+        LocalDateTime start = LocalDateTime.now().minusMonths(2);
+        when(subscriptionRepo.findStartDate(29L, USER_ID)).thenReturn(Optional.of(start));
+        when(subscriptionRepo.findHistoryDtosBefore(eq(USER_ID), eq(start), eq(29L), eq(PageRequest.of(0, 3)))).thenReturn(history(28, 27));
+
+        CursorPageDto<SubscriptionResponseDto> page = userService.getSubscriptionHistoryByUserId(USER_ID, 29L, 2);
+
+        assertThat(page.getItems()).extracting(SubscriptionResponseDto::getSubscriptionId).containsExactly(28L, 27L);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void subscriptionHistoryRejectsForeignCursor() {
+        when(subscriptionRepo.findStartDate(99L, USER_ID)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> userService.getSubscriptionHistoryByUserId(USER_ID, 99L, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Timeout(5)
+    void searchKeyBackfillFinishesWithNonPositiveChunkSize() {
+        ReflectionTestUtils.setField(userService, "backfillChunkSize", 0);
+        when(userRepo.findMaxId()).thenReturn(3L);
+
+        userService.backfillSearchKeys();
+
+        // Treated as a chunk size of one
+        verify(userRepo).backfillSearchKeys(1L, 1L);
+        verify(userRepo).backfillSearchKeys(2L, 2L);
+        verify(userRepo).backfillSearchKeys(3L, 3L);
+    }
+
+    private static List<SubscriptionResponseDto> history(long... subscriptionIds) {
+        List<SubscriptionResponseDto> rows = new ArrayList<>();
+        for (long id : subscriptionIds) {
+            SubscriptionResponseDto row = new SubscriptionResponseDto();
+            row.setSubscriptionId(id);
+            row.setUserId(USER_ID);
+            rows.add(row);
+        }
+        return rows;
+    }
+}